@@ -0,0 +1,17 @@
+package com.testtask.bankcardmanagement.config.retryConfig;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a transactional method that is executed again if it fails on an optimistic lock conflict
+ * (the {@code @Version} of the changed entity was incremented by another transaction).
+ * The whole transaction is repeated, so the method must not have side effects outside the database
+ * @see OptimisticRetryInterceptor
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OptimisticRetry {
+}
@@ -0,0 +1,40 @@
+package com.testtask.bankcardmanagement.config.retryConfig;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class OptimisticRetryConfig {
+
+    /**
+     * Advisor applying {@link OptimisticRetryInterceptor} to {@link OptimisticRetry} methods.
+     * The order is higher than the order of the transaction advisor ({@link Ordered#LOWEST_PRECEDENCE}),
+     * so the retry wraps the transaction and the commit, where the version conflict is usually detected.
+     * Advisors are created before the other beans, so the meter registry is resolved on first use
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public Advisor optimisticRetryAdvisor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${my.payment.retry.max_attempts:5}") int maxAttempts,
+            @Value("${my.payment.retry.initial_backoff_ms:5}") long initialBackoffMs,
+            @Value("${my.payment.retry.max_backoff_ms:100}") long maxBackoffMs
+    ) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                AnnotationMatchingPointcut.forMethodAnnotation(OptimisticRetry.class),
+                new OptimisticRetryInterceptor(meterRegistry, maxAttempts, initialBackoffMs, maxBackoffMs)
+        );
+        advisor.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+
+        return advisor;
+    }
+}
@@ -0,0 +1,81 @@
+package com.testtask.bankcardmanagement.config.retryConfig;
+
+import com.testtask.bankcardmanagement.exception.transaction.TransactionConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Interceptor for {@link OptimisticRetry} methods. Must be applied outside the transaction interceptor,
+ * so that each attempt runs in a new transaction and sees the changes of the transaction it conflicted with.
+ * <p>Between attempts the thread waits a random time from zero to the exponentially growing backoff
+ * (full jitter), so the conflicting requests do not retry at the same moment again.</p>
+ * <p>Metrics: {@code payment.optimistic.retries} - repeated attempts,
+ * {@code payment.optimistic.conflicts} - operations rejected after the last attempt, both tagged by operation.
+ * The id of the conflicting card is written to the log, it is not used as a tag to keep the number of time series bounded</p>
+ */
+@Slf4j
+public class OptimisticRetryInterceptor implements MethodInterceptor {
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public OptimisticRetryInterceptor(ObjectProvider<MeterRegistry> meterRegistry, int maxAttempts, long initialBackoffMs, long maxBackoffMs) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String operation = invocation.getMethod().getName();
+
+        for(int attempt = 1; ; attempt++) {
+            try {
+                // Each attempt needs its own copy of the invocation, the original can be proceeded only once
+                return ((ProxyMethodInvocation) invocation).invocableClone().proceed();
+            } catch (OptimisticLockingFailureException e) {
+                Object entityId = e instanceof ObjectOptimisticLockingFailureException objectException
+                        ? objectException.getIdentifier()
+                        : null;
+
+                if(attempt >= maxAttempts) {
+                    counter("payment.optimistic.conflicts", operation).increment();
+                    log.warn("Operation {} on entity {} rejected after {} attempts due to concurrent changes", operation, entityId, attempt);
+                    throw new TransactionConflictException("The card is being changed by another operation, try again later.", e);
+                }
+
+                counter("payment.optimistic.retries", operation).increment();
+                log.debug("Optimistic lock conflict in {} on entity {}, attempt {} of {}", operation, entityId, attempt, maxAttempts);
+                Thread.sleep(backoff(attempt));
+            }
+        }
+    }
+
+    /**
+     * The method calculates the delay before the next attempt
+     * @param attempt number of the failed attempt, starting from 1
+     * @return random delay in milliseconds from zero to {@code min(maxBackoff, initialBackoff * 2^(attempt - 1))}
+     */
+    long backoff(int attempt) {
+        long exponential = initialBackoffMs << Math.min(attempt - 1, MAX_BACKOFF_SHIFT);
+        long bound = Math.min(maxBackoffMs, exponential);
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private Counter counter(String name, String operation) {
+        return meterRegistry.getObject().counter(name, "operation", operation);
+    }
+}
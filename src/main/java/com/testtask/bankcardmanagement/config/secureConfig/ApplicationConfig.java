@@ -3,6 +3,7 @@ package com.testtask.bankcardmanagement.config.secureConfig;
 import com.testtask.bankcardmanagement.exception.user.UserNotFoundException;
 import com.testtask.bankcardmanagement.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus;
@@ -15,12 +16,21 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.access.AccessDeniedHandler;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 
 @Configuration
 @RequiredArgsConstructor
 public class ApplicationConfig {
     private final UserRepository userRepository;
 
+    /**
+     * BCrypt cost factor (log2 of the number of rounds), each step doubles the hashing time.
+     * Existing hashes keep their own cost and are still verified
+     */
+    @Value("${my.security.password_hashing.strength:10}")
+    private int passwordStrength;
+
     @Bean
     public AuthenticationEntryPoint authenticationEntryPoint() {
         return (request, response, authException) -> {
@@ -43,6 +53,16 @@ public class ApplicationConfig {
         };
     }
 
+    /**
+     * The authentication is kept in a request attribute, not in the session (the API is stateless).
+     * The attribute lives until the end of the request, so the ASYNC and ERROR dispatches of
+     * the {@code CompletableFuture} and {@code StreamingResponseBody} responses are authenticated too
+     */
+    @Bean
+    public SecurityContextRepository securityContextRepository() {
+        return new RequestAttributeSecurityContextRepository();
+    }
+
     @Bean
     public UserDetailsService userDetailsService() {
         return (userEmail) -> userRepository.findUserByEmail(userEmail)
@@ -64,6 +84,6 @@ public class ApplicationConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(passwordStrength);
     }
 }
@@ -1,19 +1,26 @@
 package com.testtask.bankcardmanagement.config.secureConfig;
 
 import com.testtask.bankcardmanagement.exception.security.JwtTokenException;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.AuthenticationMode;
+import com.testtask.bankcardmanagement.service.security.PrincipalCache;
+import com.testtask.bankcardmanagement.service.security.TokenRevocationService;
 import com.testtask.bankcardmanagement.service.security.jwt.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -23,8 +30,17 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
+    private final TokenRevocationService tokenRevocationService;
     private final AuthenticationEntryPoint authenticationEntryPoint;
+    private final SecurityContextRepository securityContextRepository;
+
+    /**
+     * DATABASE - the principal is loaded by email (through {@link PrincipalCache}),
+     * CLAIMS - the principal is built from the token claims, revoked tokens are rejected
+     */
+    @Value("${my.security.authentication_mode:DATABASE}")
+    private AuthenticationMode authenticationMode = AuthenticationMode.DATABASE;
 
     @Override
     protected void doFilterInternal(
@@ -41,23 +57,37 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
             jwt = authHeader.substring(7);
-            userEmail = jwtService.extractUserEmail(jwt);
+            // The signature and the expiration are verified here, the token is parsed only once
+            Claims claims = jwtService.validateToken(jwt);
+            userEmail = claims.getSubject();
             boolean isUserAlreadyLogIn = SecurityContextHolder.getContext().getAuthentication() == null;
             if (userEmail != null && isUserAlreadyLogIn) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-                if (jwtService.isTokenValid(jwt, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
+                UserDetails userDetails = authenticationMode == AuthenticationMode.CLAIMS
+                        ? principalFromClaims(claims)
+                        : principalCache.getUser(userEmail);
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        userDetails,
+                        null,
+                        userDetails.getAuthorities()
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(authToken);
+                SecurityContextHolder.setContext(context);
+                // The filter is not applied to the async dispatch, the context is loaded from the request there
+                securityContextRepository.saveContext(context, request, response);
             }
             filterChain.doFilter(request, response);
         } catch (Exception e) {
             authenticationEntryPoint.commence(request, response, new JwtTokenException("Invalid token. " + e.getMessage()));
         }
     }
+
+    private User principalFromClaims(Claims claims) {
+        User user = jwtService.extractPrincipal(claims);
+        if(tokenRevocationService.isRevoked(user.getId(), claims.getIssuedAt()))
+            throw new JwtTokenException("Token has been revoked.");
+
+        return user;
+    }
 }
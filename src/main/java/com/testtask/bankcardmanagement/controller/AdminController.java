@@ -7,12 +7,17 @@ import com.testtask.bankcardmanagement.model.dto.card.CardParamFilter;
 import com.testtask.bankcardmanagement.model.dto.card.CardRequest;
 import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
 import com.testtask.bankcardmanagement.model.dto.limit.LimitUpdateRequest;
+import com.testtask.bankcardmanagement.model.dto.page.CursorPage;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
 import com.testtask.bankcardmanagement.model.dto.user.UserRequest;
 import com.testtask.bankcardmanagement.model.dto.user.UserResponse;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
+import com.testtask.bankcardmanagement.model.enums.ExportFormat;
 import com.testtask.bankcardmanagement.service.card.CardService;
 import com.testtask.bankcardmanagement.service.security.jwt.AuthenticationService;
+import com.testtask.bankcardmanagement.service.transaction.TransactionExportService;
 import com.testtask.bankcardmanagement.service.transaction.TransactionService;
 import com.testtask.bankcardmanagement.service.user.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -21,10 +26,14 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Set;
@@ -41,6 +50,7 @@ public class AdminController {
     private final CardService cardService;
     private final AuthenticationService authenticationService;
     private final TransactionService transactionService;
+    private final TransactionExportService transactionExportService;
 
     @SecurityRequirement(name = "JWT")
     @Operation(
@@ -115,17 +125,18 @@ public class AdminController {
             description = "Allows you to get all the cards. Only an administrator can do this."
     )
     @GetMapping("/get-all-cards")
-    public ResponseEntity<Page<CardResponse>> getAllCards(
+    public ResponseEntity<Slice<CardResponse>> getAllCards(
             @RequestBody() @Valid @Parameter(description = "Can filter by this values") CardParamFilter paramFilter,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") List<String> sortList,
-            @RequestParam(defaultValue = "ASC") String sortOrder
+            @RequestParam(defaultValue = "ASC") String sortOrder,
+            @RequestParam(defaultValue = "EXACT") @Parameter(description = "How the total is calculated: SLICE (no total), EXACT, APPROXIMATE") CountMode countMode
     )
     {
         validateCardSortFields(sortList);
         return ResponseEntity.ok(
-                cardService.getAllCards(paramFilter, page, size, sortList, sortOrder)
+                cardService.getAllCards(paramFilter, page, size, sortList, sortOrder, countMode)
         );
     }
 
@@ -135,20 +146,82 @@ public class AdminController {
             description = "Allows you to get all transactions of any card by its id. Only an administrator can do this."
     )
     @GetMapping("/get-transactions-by-card/{cardId}")
-    public ResponseEntity<Page<TransactionResponse>> getTransactionsByCard(
+    public ResponseEntity<Slice<TransactionResponse>> getTransactionsByCard(
             @PathVariable("cardId") Long cardId,
             @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") List<String> sortList,
-            @RequestParam(defaultValue = "ASC") String sortOrder
+            @RequestParam(defaultValue = "ASC") String sortOrder,
+            @RequestParam(defaultValue = "EXACT") @Parameter(description = "How the total is calculated: SLICE (no total), EXACT, APPROXIMATE") CountMode countMode
     ) {
         validateTransactionSortFields(sortList);
         return ResponseEntity.ok(
-                transactionService.getTransactionsByCard(cardId, transactionParamFilter, page, size, sortList, sortOrder)
+                transactionService.getTransactionsByCard(cardId, transactionParamFilter, page, size, sortList, sortOrder, countMode)
         );
     }
 
+    @SecurityRequirement(name = "JWT")
+    @Operation(
+            summary = "Get transaction history of a specific card",
+            description = "Allows you to get the transactions of any card by its id in a compact form: the card is returned once, the transactions without the card. Only an administrator can do this."
+    )
+    @GetMapping("/get-transactions-by-card/{cardId}/history")
+    public ResponseEntity<TransactionHistoryResponse> getTransactionHistory(
+            @PathVariable("cardId") Long cardId,
+            @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") List<String> sortList,
+            @RequestParam(defaultValue = "ASC") String sortOrder,
+            @RequestParam(defaultValue = "EXACT") @Parameter(description = "How the total is calculated: SLICE (no total), EXACT, APPROXIMATE") CountMode countMode
+    ) {
+        validateTransactionSortFields(sortList);
+        return ResponseEntity.ok(
+                transactionService.getTransactionHistoryByCard(cardId, transactionParamFilter, page, size, sortList, sortOrder, countMode)
+        );
+    }
+
+    @SecurityRequirement(name = "JWT")
+    @Operation(
+            summary = "Get transactions of a specific card by cursor",
+            description = "Allows you to get transactions of any card page by page using the cursor returned with the previous page. " +
+                    "Pages are sorted by transaction date, each page costs the same regardless of its depth. Only an administrator can do this."
+    )
+    @GetMapping("/get-transactions-by-card/{cardId}/scroll")
+    public ResponseEntity<CursorPage<TransactionResponse>> scrollTransactionsByCard(
+            @PathVariable("cardId") Long cardId,
+            @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
+            @RequestParam(required = false) @Parameter(description = "Cursor of the next page, empty for the first page") String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "DESC") String sortOrder
+    ) {
+        return ResponseEntity.ok(
+                transactionService.scrollTransactionsByCard(cardId, transactionParamFilter, cursor, size, sortOrder)
+        );
+    }
+
+    @SecurityRequirement(name = "JWT")
+    @Operation(
+            summary = "Export transactions of a specific card",
+            description = "Allows you to download all transactions of any card by its id as NDJSON or CSV, ordered by date. The rows are streamed, the export size is not limited by the page size. Only an administrator can do this."
+    )
+    @GetMapping("/export-transactions-by-card/{cardId}")
+    public ResponseEntity<StreamingResponseBody> exportTransactionsByCard(
+            @PathVariable("cardId") Long cardId,
+            @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
+            @RequestParam(defaultValue = "NDJSON") @Parameter(description = "Output format: NDJSON or CSV") ExportFormat format
+    ) {
+        StreamingResponseBody body = transactionExportService.exportByCard(cardId, transactionParamFilter, format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("transactions-" + cardId + "." + format.getFileExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     @SecurityRequirement(name = "JWT")
     @Operation(
             summary = "Update card limits",
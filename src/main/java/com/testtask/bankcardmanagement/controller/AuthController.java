@@ -3,6 +3,7 @@ package com.testtask.bankcardmanagement.controller;
 import com.testtask.bankcardmanagement.model.dto.auth.AuthenticationRequest;
 import com.testtask.bankcardmanagement.model.dto.auth.AuthenticationResponse;
 import com.testtask.bankcardmanagement.model.dto.auth.RegistrationRequest;
+import com.testtask.bankcardmanagement.service.security.PasswordHashingExecutor;
 import com.testtask.bankcardmanagement.service.security.jwt.AuthenticationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -15,12 +16,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @Tag(name = "Authentication controller", description = "Endpoints for registration / authorization")
 @RestController
 @RequestMapping("/api/v1/auth")
 @RequiredArgsConstructor
 public class AuthController {
     private final AuthenticationService authenticationService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
     @SecurityRequirement(name = "JWT")
     @Operation(
@@ -28,8 +32,8 @@ public class AuthController {
             description = "Allows you to register any user using email and password. Only an administrator can do this."
     )
     @PostMapping("/register")
-    public ResponseEntity<AuthenticationResponse> register(@RequestBody @Valid RegistrationRequest registrationRequest) {
-        return ResponseEntity.ok(authenticationService.register(registrationRequest));
+    public CompletableFuture<ResponseEntity<AuthenticationResponse>> register(@RequestBody @Valid RegistrationRequest registrationRequest) {
+        return passwordHashingExecutor.submit(() -> ResponseEntity.ok(authenticationService.register(registrationRequest)));
     }
 
     @SecurityRequirement(name = "JWT")
@@ -38,8 +42,8 @@ public class AuthController {
             description = "Allows you to log into the service using your email and password. Any user can do this."
     )
     @PostMapping("authenticate")
-    public ResponseEntity<AuthenticationResponse> authenticate(@RequestBody @Valid AuthenticationRequest authenticationRequest) {
-        return ResponseEntity.ok(authenticationService.authenticate(authenticationRequest));
+    public CompletableFuture<ResponseEntity<AuthenticationResponse>> authenticate(@RequestBody @Valid AuthenticationRequest authenticationRequest) {
+        return passwordHashingExecutor.submit(() -> ResponseEntity.ok(authenticationService.authenticate(authenticationRequest)));
     }
 
 }
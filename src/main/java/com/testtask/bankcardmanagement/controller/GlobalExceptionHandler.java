@@ -5,16 +5,23 @@ import com.testtask.bankcardmanagement.exception.card.CardDuplicateException;
 import com.testtask.bankcardmanagement.exception.card.CardNotAvailableException;
 import com.testtask.bankcardmanagement.exception.card.CardNotFoundException;
 import com.testtask.bankcardmanagement.exception.encryption.AESEncryptionException;
+import com.testtask.bankcardmanagement.exception.encryption.HMACHashingException;
 import com.testtask.bankcardmanagement.exception.limit.LimitExceededException;
 import com.testtask.bankcardmanagement.exception.limit.LimitException;
 import com.testtask.bankcardmanagement.exception.other.ConvertingEnumException;
+import com.testtask.bankcardmanagement.exception.other.InvalidCursorException;
 import com.testtask.bankcardmanagement.exception.other.InvalidSortFieldException;
 import com.testtask.bankcardmanagement.exception.security.AccessDeniedException;
+import com.testtask.bankcardmanagement.exception.security.AuthenticationOverloadedException;
 import com.testtask.bankcardmanagement.exception.security.JwtTokenException;
+import com.testtask.bankcardmanagement.exception.transaction.IdempotencyKeyException;
+import com.testtask.bankcardmanagement.exception.transaction.TransactionConflictException;
 import com.testtask.bankcardmanagement.exception.transaction.TransactionDeclinedException;
 import com.testtask.bankcardmanagement.exception.user.UserDuplicateException;
 import com.testtask.bankcardmanagement.exception.user.UserNotFoundException;
 import io.swagger.v3.oas.annotations.Hidden;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -48,6 +55,13 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(exception.getMessage());
     }
 
+    @ExceptionHandler(AuthenticationOverloadedException.class)
+    public ResponseEntity<String> handleAuthenticationOverloaded(AuthenticationOverloadedException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(exception.getMessage());
+    }
+
 // Validation
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -101,6 +115,11 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
     }
 
+    @ExceptionHandler(HMACHashingException.class)
+    public ResponseEntity<String> handleHMACHashing(HMACHashingException exception) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
+    }
+
 // Limit
 
     @ExceptionHandler(LimitExceededException.class)
@@ -120,6 +139,21 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(exception.getMessage());
     }
 
+    @ExceptionHandler(TransactionConflictException.class)
+    public ResponseEntity<String> handleTransactionConflict(TransactionConflictException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(exception.getMessage());
+    }
+
+    @ExceptionHandler(IdempotencyKeyException.class)
+    public ResponseEntity<String> handleIdempotencyKey(IdempotencyKeyException exception) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(exception.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailure(OptimisticLockingFailureException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("The data was changed by another operation, try again.");
+    }
+
 // Other
 
     @ExceptionHandler(ConvertingEnumException.class)
@@ -132,4 +166,9 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(exception.getMessage());
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(InvalidCursorException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(exception.getMessage());
+    }
+
 }
@@ -3,25 +3,38 @@ package com.testtask.bankcardmanagement.controller;
 import com.testtask.bankcardmanagement.exception.other.InvalidSortFieldException;
 import com.testtask.bankcardmanagement.model.dto.card.CardParamFilter;
 import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
+import com.testtask.bankcardmanagement.model.dto.page.CursorPage;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferRequest;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionTransferRequest;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
 import com.testtask.bankcardmanagement.model.dto.user.BlockRequest;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
+import com.testtask.bankcardmanagement.model.enums.ExportFormat;
 import com.testtask.bankcardmanagement.service.card.CardService;
+import com.testtask.bankcardmanagement.service.transaction.TransactionExportService;
 import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import com.testtask.bankcardmanagement.service.transaction.WriteOffSequencer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "User controller", description = "Endpoints for admins only")
 @RequiredArgsConstructor
@@ -29,9 +42,12 @@ import java.util.Set;
 @RequestMapping("/api/v1/user/")
 public class UserController {
     private static final Set<String> SORTABLE_FIELDS = Set.of("id", "card.status", "amount");
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
     private final TransactionService transactionService;
+    private final TransactionExportService transactionExportService;
     private final CardService cardService;
+    private final WriteOffSequencer writeOffSequencer;
 
     @SecurityRequirement(name = "JWT")
     @Operation(
@@ -39,14 +55,15 @@ public class UserController {
             description = "Allows you to get all user cards. Only an user can do this."
     )
     @GetMapping("/get-all-cards")
-    public ResponseEntity<Page<CardResponse>> getAllUserCards(
+    public ResponseEntity<Slice<CardResponse>> getAllUserCards(
             @RequestBody @Valid CardParamFilter cardParamFilter,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "EXACT") @Parameter(description = "How the total is calculated: SLICE (no total), EXACT, APPROXIMATE") CountMode countMode
     )
     {
         return ResponseEntity.ok(
-                cardService.getAllCardsForCurrentUser(cardParamFilter, page, size)
+                cardService.getAllCardsForCurrentUser(cardParamFilter, page, size, countMode)
         );
     }
 
@@ -62,29 +79,99 @@ public class UserController {
             description = "Allows you to get all transactions on any user card by card Id. Only an user can do this."
     )
     @GetMapping("/get-transactions-by-user-card/{cardId}")
-    public ResponseEntity<Page<TransactionResponse>> getTransactionsByCard(
+    public ResponseEntity<Slice<TransactionResponse>> getTransactionsByCard(
+            @PathVariable("cardId") Long cardId,
+            @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") List<String> sortList,
+            @RequestParam(defaultValue = "ASC") String sortOrder,
+            @RequestParam(defaultValue = "EXACT") @Parameter(description = "How the total is calculated: SLICE (no total), EXACT, APPROXIMATE") CountMode countMode
+    ) {
+        validateSortFields(sortList);
+        return ResponseEntity.ok(
+                transactionService.getTransactionsByUserCard(cardId, transactionParamFilter, page, size, sortList, sortOrder, countMode)
+        );
+    }
+
+    @SecurityRequirement(name = "JWT")
+    @Operation(
+            summary = "Get card transaction history",
+            description = "Allows you to get the transactions on the user card by card Id in a compact form: the card is returned once, the transactions without the card. Only an user can do this."
+    )
+    @GetMapping("/get-transactions-by-user-card/{cardId}/history")
+    public ResponseEntity<TransactionHistoryResponse> getTransactionHistory(
             @PathVariable("cardId") Long cardId,
             @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") List<String> sortList,
-            @RequestParam(defaultValue = "ASC") String sortOrder
+            @RequestParam(defaultValue = "ASC") String sortOrder,
+            @RequestParam(defaultValue = "EXACT") @Parameter(description = "How the total is calculated: SLICE (no total), EXACT, APPROXIMATE") CountMode countMode
     ) {
         validateSortFields(sortList);
         return ResponseEntity.ok(
-                transactionService.getTransactionsByUserCard(cardId, transactionParamFilter, page, size, sortList, sortOrder)
+                transactionService.getTransactionHistoryByUserCard(cardId, transactionParamFilter, page, size, sortList, sortOrder, countMode)
+        );
+    }
+
+    @SecurityRequirement(name = "JWT")
+    @Operation(
+            summary = "Get card transactions by cursor",
+            description = "Allows you to get transactions on the user card page by page using the cursor returned with the previous page. " +
+                    "Pages are sorted by transaction date, each page costs the same regardless of its depth. Only an user can do this."
+    )
+    @GetMapping("/get-transactions-by-user-card/{cardId}/scroll")
+    public ResponseEntity<CursorPage<TransactionResponse>> scrollTransactionsByCard(
+            @PathVariable("cardId") Long cardId,
+            @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
+            @RequestParam(required = false) @Parameter(description = "Cursor of the next page, empty for the first page") String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "DESC") String sortOrder
+    ) {
+        return ResponseEntity.ok(
+                transactionService.scrollTransactionsByUserCard(cardId, transactionParamFilter, cursor, size, sortOrder)
         );
     }
 
+    @SecurityRequirement(name = "JWT")
+    @Operation(
+            summary = "Export card transactions",
+            description = "Allows you to download all transactions on the user card by card Id as NDJSON or CSV, ordered by date. The rows are streamed, the export size is not limited by the page size. Only an user can do this."
+    )
+    @GetMapping("/export-transactions-by-user-card/{cardId}")
+    public ResponseEntity<StreamingResponseBody> exportTransactionsByCard(
+            @PathVariable("cardId") Long cardId,
+            @RequestBody @Valid @Parameter(description = "Can filter by this values") TransactionParamFilter transactionParamFilter,
+            @RequestParam(defaultValue = "NDJSON") @Parameter(description = "Output format: NDJSON or CSV") ExportFormat format
+    ) {
+        StreamingResponseBody body = transactionExportService.exportByUserCard(cardId, transactionParamFilter, format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("transactions-" + cardId + "." + format.getFileExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     @SecurityRequirement(name = "JWT")
     @Operation(
             summary = "Make a withdrawal",
             description = "Allows you to perform a debit operation using a card number. Only an user can do this."
     )
     @PostMapping("/write-off")
-    public ResponseEntity<TransactionResponse> writeOff(@RequestBody @Valid TransactionWriteOffRequest transactionWriteOffRequest) {
-        TransactionResponse transactionResponse = transactionService.writeOff(transactionWriteOffRequest);
-        return ResponseEntity.ok(transactionResponse);
+    public CompletableFuture<ResponseEntity<TransactionResponse>> writeOff(
+            @RequestBody @Valid TransactionWriteOffRequest transactionWriteOffRequest,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Parameter(description = "Key of the request, a retry with the same key returns the first response") String idempotencyKey
+    ) {
+        // Executed in the request thread unless it is applied by the group commit of its card
+        if(!writeOffSequencer.isGroupCommit(idempotencyKey))
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.ok(transactionService.writeOff(transactionWriteOffRequest, idempotencyKey)));
+
+        return writeOffSequencer.writeOff(transactionWriteOffRequest)
+                .thenApply(ResponseEntity::ok);
     }
 
     @SecurityRequirement(name = "JWT")
@@ -93,11 +180,30 @@ public class UserController {
             description = "Allows you to transfer funds between user cards using card numbers. Only an user can do this."
     )
     @PostMapping("/transfer")
-    public ResponseEntity<TransactionResponse> transfer(@RequestBody @Valid TransactionTransferRequest transactionTransferRequest) {
-        TransactionResponse transactionResponse = transactionService.transfer(transactionTransferRequest);
+    public ResponseEntity<TransactionResponse> transfer(
+            @RequestBody @Valid TransactionTransferRequest transactionTransferRequest,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Parameter(description = "Key of the request, a retry with the same key returns the first response") String idempotencyKey
+    ) {
+        TransactionResponse transactionResponse = transactionService.transfer(transactionTransferRequest, idempotencyKey);
         return ResponseEntity.ok(transactionResponse);
     }
 
+    @SecurityRequirement(name = "JWT")
+    @Operation(
+            summary = "Transfer funds from one card to several cards",
+            description = "Allows you to transfer funds from one user card to up to 1000 user cards in one operation. " +
+                    "Transfers to unknown cards are rejected, the others are executed. Only an user can do this."
+    )
+    @PostMapping("/transfer-batch")
+    public ResponseEntity<TransactionBatchTransferResponse> transferBatch(
+            @RequestBody @Valid TransactionBatchTransferRequest transactionBatchTransferRequest,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Parameter(description = "Key of the request, a retry with the same key returns the first response") String idempotencyKey
+    ) {
+        TransactionBatchTransferResponse transactionBatchTransferResponse =
+                transactionService.transferBatch(transactionBatchTransferRequest, idempotencyKey);
+        return ResponseEntity.ok(transactionBatchTransferResponse);
+    }
+
     private void validateSortFields(List<String> sortList) {
         sortList.forEach(field -> {
             if(!SORTABLE_FIELDS.contains(field))
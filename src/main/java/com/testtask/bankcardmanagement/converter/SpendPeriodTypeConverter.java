@@ -0,0 +1,31 @@
+package com.testtask.bankcardmanagement.converter;
+
+import com.testtask.bankcardmanagement.exception.other.ConvertingEnumException;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Convert;
+
+import java.util.stream.Stream;
+
+@Convert
+public class SpendPeriodTypeConverter implements AttributeConverter<SpendPeriodType, String> {
+    @Override
+    public String convertToDatabaseColumn(SpendPeriodType periodType) {
+        if(periodType == null)
+            return null;
+
+        return periodType.name();
+    }
+
+    @Override
+    public SpendPeriodType convertToEntityAttribute(String strPeriodType) {
+        if(strPeriodType == null)
+            return null;
+
+        return Stream.of(SpendPeriodType.values())
+                .filter(type -> strPeriodType.equals(type.name()))
+                .findFirst()
+                .orElseThrow(() -> new ConvertingEnumException("Cannot correctly convert enum periodType to entity: " +
+                        strPeriodType));
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Component;
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Base64;
@@ -16,40 +17,34 @@ public class AESEncryption {
     private static final String ENCRYPT_ALGORITHM = "AES/GCM/NoPadding";
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_LENGTH = 128;
+    private static final int MAX_IDLE_CIPHERS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * SecureRandom is thread-safe, one instance is shared to generate all IVs
+     */
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     private final SecretKeySpec secretKeySpec;
 
+    /**
+     * Cipher.getInstance is expensive (provider lookup), so initialized ciphers are reused.
+     * Each call re-initializes the cipher with its own IV, so the same key + IV pair is never reused
+     */
+    private final InstancePool<Cipher> cipherPool = new InstancePool<>(AESEncryption::createCipher, MAX_IDLE_CIPHERS);
+
     public AESEncryption(@Value("${my.encrypt_key}") String key) {
         byte[] bytes = key.getBytes();
         this.secretKeySpec = new SecretKeySpec(bytes, "AES");
     }
 
     public String encrypt(String data) {
-        byte[] iv = generateIV();
-
-        byte[] encrypted;
-        byte[] concatenatedIvAndEncrypted;
-        try {
-            // Create an AES Cipher instance
-            Cipher cipher = Cipher.getInstance(ENCRYPT_ALGORITHM);
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, gcmSpec);
-
-            // Concatenation of IV and encrypted data
-            encrypted = cipher.doFinal(data.getBytes());
-            concatenatedIvAndEncrypted = new byte[iv.length + encrypted.length]; // arr2
-// Array source (iv) | what position to start in source array (iv) | where to copy (arr2) | from what position to start insertion in target array (arr2)
-// | number of elements to insert
-            System.arraycopy(iv, 0, concatenatedIvAndEncrypted, 0, iv.length);
-            System.arraycopy(encrypted, 0, concatenatedIvAndEncrypted, iv.length, encrypted.length);
-        } catch (Exception e) {
-            throw new AESEncryptionException("Encryption error: " + e.getMessage(), e);
-        }
+        byte[] plain = data.getBytes(StandardCharsets.UTF_8);
+        byte[] concatenatedIvAndEncrypted = encrypt(plain);
 
         String base64View = Base64.getEncoder().encodeToString(concatenatedIvAndEncrypted);
 
         // Clearing sensitive data from memory
-        Arrays.fill(iv, (byte) '\0');
-        Arrays.fill(encrypted, (byte) '\0');
+        Arrays.fill(plain, (byte) '\0');
         Arrays.fill(concatenatedIvAndEncrypted, (byte) '\0');
 
         return base64View;
@@ -57,33 +52,75 @@ public class AESEncryption {
 
     public String decrypt(String encryptedData) {
         byte[] fromBase64ToByteView = Base64.getDecoder().decode(encryptedData);
-        byte[] iv = Arrays.copyOfRange(fromBase64ToByteView, 0, GCM_IV_LENGTH);
-        byte[] encryptText = Arrays.copyOfRange(fromBase64ToByteView, GCM_IV_LENGTH, fromBase64ToByteView.length);
+        byte[] decrypted = decrypt(fromBase64ToByteView);
+
+        String decryptedView = new String(decrypted, StandardCharsets.UTF_8);
+
+        // Clearing sensitive data from memory
+        Arrays.fill(fromBase64ToByteView, (byte) '\0');
+        Arrays.fill(decrypted, (byte) '\0');
+
+        return decryptedView;
+    }
+
+    /**
+     * The method encrypts the data without Base64 / String conversions
+     * @param data bytes to encrypt
+     * @return IV (12 bytes) followed by the encrypted data and the GCM tag
+     */
+    public byte[] encrypt(byte[] data) {
+        byte[] iv = generateIV();
 
-        byte[] decrypted;
+        Cipher cipher = cipherPool.borrow();
         try {
-            Cipher cipher = Cipher.getInstance(ENCRYPT_ALGORITHM);
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, gcmSpec);
-            decrypted = cipher.doFinal(encryptText);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+
+            // IV and encrypted data are written to the same array, without an intermediate copy
+            byte[] concatenatedIvAndEncrypted = new byte[GCM_IV_LENGTH + cipher.getOutputSize(data.length)];
+            System.arraycopy(iv, 0, concatenatedIvAndEncrypted, 0, GCM_IV_LENGTH);
+            cipher.doFinal(data, 0, data.length, concatenatedIvAndEncrypted, GCM_IV_LENGTH);
+
+            cipherPool.release(cipher);
+            return concatenatedIvAndEncrypted;
         } catch (Exception e) {
-            throw new AESEncryptionException("Decryption error: " + e.getMessage(), e);
+            // The cipher may be in an inconsistent state, so it is not returned to the pool
+            throw new AESEncryptionException("Encryption error: " + e.getMessage(), e);
+        } finally {
+            Arrays.fill(iv, (byte) '\0');
         }
+    }
 
-        // Clearing sensitive data from memory
-        Arrays.fill(fromBase64ToByteView, (byte) '\0');
-        Arrays.fill(iv, (byte) '\0');
-        Arrays.fill(encryptText, (byte) '\0');
+    /**
+     * The method decrypts the data produced by {@link #encrypt(byte[])} without Base64 / String conversions
+     * @param encryptedData IV (12 bytes) followed by the encrypted data and the GCM tag
+     * @return decrypted bytes
+     */
+    public byte[] decrypt(byte[] encryptedData) {
+        Cipher cipher = cipherPool.borrow();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, new GCMParameterSpec(GCM_TAG_LENGTH, encryptedData, 0, GCM_IV_LENGTH));
+            byte[] decrypted = cipher.doFinal(encryptedData, GCM_IV_LENGTH, encryptedData.length - GCM_IV_LENGTH);
 
-        return new String(decrypted);
+            cipherPool.release(cipher);
+            return decrypted;
+        } catch (Exception e) {
+            throw new AESEncryptionException("Decryption error: " + e.getMessage(), e);
+        }
     }
 
     private byte[] generateIV() {
-        SecureRandom secureRandom = new SecureRandom();
         byte[] iv = new byte[GCM_IV_LENGTH];
-        secureRandom.nextBytes(iv);
+        SECURE_RANDOM.nextBytes(iv);
 
         return iv;
     }
 
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(ENCRYPT_ALGORITHM);
+        } catch (Exception e) {
+            throw new AESEncryptionException("Cipher creation error: " + e.getMessage(), e);
+        }
+    }
+
 }
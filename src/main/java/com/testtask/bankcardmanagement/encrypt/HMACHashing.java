@@ -0,0 +1,58 @@
+package com.testtask.bankcardmanagement.encrypt;
+
+import com.testtask.bankcardmanagement.exception.encryption.HMACHashingException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/**
+ * Keyed deterministic hashing of card numbers (blind index).
+ * The same card number always gives the same hash, so a card can be found by an indexed column
+ * without decrypting {@code encrypted_number}
+ */
+@Component
+public class HMACHashing {
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+    private static final int MAX_IDLE_MACS = Runtime.getRuntime().availableProcessors() * 2;
+    private final SecretKeySpec secretKeySpec;
+
+    /**
+     * Initialized Mac instances are reused, {@link Mac#doFinal} resets the instance for the next use
+     */
+    private final InstancePool<Mac> macPool = new InstancePool<>(this::createMac, MAX_IDLE_MACS);
+
+    public HMACHashing(@Value("${my.hash_key}") String key) {
+        this.secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HASH_ALGORITHM);
+    }
+
+    /**
+     * The method calculates HMAC-SHA256 of the data
+     * @param data string to be hashed (full card number)
+     * @return {@code String} hex representation of the hash (64 characters)
+     */
+    public String hash(String data) {
+        Mac mac = macPool.borrow();
+        try {
+            String hash = HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+            macPool.release(mac);
+            return hash;
+        } catch (Exception e) {
+            throw new HMACHashingException("Hashing error: " + e.getMessage(), e);
+        }
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HASH_ALGORITHM);
+            mac.init(secretKeySpec);
+            return mac;
+        } catch (Exception e) {
+            throw new HMACHashingException("Mac creation error: " + e.getMessage(), e);
+        }
+    }
+
+}
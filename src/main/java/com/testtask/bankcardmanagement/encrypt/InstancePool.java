@@ -0,0 +1,51 @@
+package com.testtask.bankcardmanagement.encrypt;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free pool of reusable instances which are expensive to create and not thread-safe
+ * ({@link javax.crypto.Cipher}, {@link javax.crypto.Mac}).
+ * The instance is taken by one thread and returned after use; if the pool is empty, a new instance is created.
+ * Does not use {@code synchronized} and {@link ThreadLocal}, so it works the same for platform and virtual threads
+ * @param <T> type of pooled instance
+ */
+class InstancePool<T> {
+    private final Queue<T> instances = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Supplier<T> factory;
+    private final int maxIdle;
+
+    InstancePool(Supplier<T> factory, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * The method takes an idle instance or creates a new one
+     * @return instance for exclusive use by the current thread
+     */
+    T borrow() {
+        T instance = instances.poll();
+        if(instance == null)
+            return factory.get();
+
+        idleCount.decrementAndGet();
+        return instance;
+    }
+
+    /**
+     * The method returns the instance to the pool. If the pool is full, the instance is discarded
+     * @param instance instance taken by {@link #borrow()}, must not be used after return
+     */
+    void release(T instance) {
+        if(idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+
+        instances.offer(instance);
+    }
+}
@@ -0,0 +1,7 @@
+package com.testtask.bankcardmanagement.exception.encryption;
+
+public class HMACHashingException extends RuntimeException {
+    public HMACHashingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
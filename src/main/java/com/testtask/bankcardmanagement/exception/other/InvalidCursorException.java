@@ -0,0 +1,7 @@
+package com.testtask.bankcardmanagement.exception.other;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.testtask.bankcardmanagement.exception.security;
+
+public class AuthenticationOverloadedException extends RuntimeException {
+    public AuthenticationOverloadedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
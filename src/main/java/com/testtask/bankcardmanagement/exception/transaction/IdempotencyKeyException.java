@@ -0,0 +1,7 @@
+package com.testtask.bankcardmanagement.exception.transaction;
+
+public class IdempotencyKeyException extends RuntimeException {
+    public IdempotencyKeyException(String message) {
+        super(message);
+    }
+}
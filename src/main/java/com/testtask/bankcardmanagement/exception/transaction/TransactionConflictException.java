@@ -0,0 +1,7 @@
+package com.testtask.bankcardmanagement.exception.transaction;
+
+public class TransactionConflictException extends RuntimeException {
+    public TransactionConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,109 @@
+package com.testtask.bankcardmanagement.job;
+
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Job that fills the columns calculated from the card number for cards created before these columns existed.
+ * The number can only be calculated in the application (the keys are not available to the database),
+ * so Liquibase adds the columns and this job fills them at startup.
+ * Each batch is committed separately, already filled cards are not selected again.
+ * Cards are changed inside the transaction and written on commit by dirty checking
+ * @see HMACHashing
+ * @see Card
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CardBackfillJob {
+    private final CardRepository cardRepository;
+    private final AESEncryption aesEncryption;
+    private final HMACHashing hmacHashing;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${my.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${my.backfill.batch_size:500}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if(enabled)
+            backfill();
+    }
+
+    /**
+     * The method processes all cards without a hash or last four digits in batches ordered by id.
+     * If the batch violates the unique constraint (the owner already has several cards with the same number,
+     * which was possible before the constraint), the cards of the batch are processed one by one
+     * and the duplicates get only the last four digits, stay without a hash and are reported in the log.
+     * The duplicates are marked with {@code hashConflict}, so they are not selected and reported again on the next startup
+     * @return number of updated cards
+     */
+    public int backfill() {
+        int updated = 0;
+        long lastId = 0L;
+        while (true) {
+            List<Long> ids = cardRepository.findIdsToBackfill(lastId, PageRequest.of(0, batchSize));
+            if(ids.isEmpty())
+                break;
+
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        cardRepository.findAllById(ids).forEach(this::fillCard));
+                updated += ids.size();
+            } catch (DataIntegrityViolationException e) {
+                for(Long id: ids) {
+                    if(backfillCard(id))
+                        updated++;
+                }
+            }
+
+            lastId = ids.get(ids.size() - 1);
+        }
+
+        if(updated > 0)
+            log.info("Card backfill finished, updated cards: {}", updated);
+
+        return updated;
+    }
+
+    private boolean backfillCard(Long id) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    cardRepository.findById(id).ifPresent(this::fillCard));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Card with id {} duplicates another card of the same owner, card hash was not filled", id);
+            transactionTemplate.executeWithoutResult(status ->
+                    cardRepository.findById(id).ifPresent(this::markHashConflict));
+            return false;
+        }
+    }
+
+    private void fillCard(Card card) {
+        String cardNumber = aesEncryption.decrypt(card.getEncryptedNumber());
+        card.setCardHash(hmacHashing.hash(cardNumber));
+        card.setLastFourDigits(cardNumber.substring(12));
+    }
+
+    private void markHashConflict(Card card) {
+        String cardNumber = aesEncryption.decrypt(card.getEncryptedNumber());
+        card.setLastFourDigits(cardNumber.substring(12));
+        card.setHashConflict(true);
+    }
+}
@@ -0,0 +1,44 @@
+package com.testtask.bankcardmanagement.job;
+
+import com.testtask.bankcardmanagement.model.IdempotencyKey;
+import com.testtask.bankcardmanagement.repository.IdempotencyKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job removing {@link IdempotencyKey} older than {@code my.idempotency.ttl_hours}:
+ * a client retries a request within minutes, after the ttl the key can be used again
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyJob {
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${my.idempotency.ttl_hours:24}")
+    private long ttlHours;
+
+    @Scheduled(cron = "${my.idempotency.purge_cron:0 0 * * * *}")
+    public void onSchedule() {
+        purge();
+    }
+
+    /**
+     * The method deletes the expired keys
+     * @return number of deleted keys
+     */
+    public int purge() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minusHours(ttlHours);
+        Integer deleted = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteAllByCreatedAtBefore(expiredBefore));
+
+        log.info("Expired idempotency keys deleted: {}", deleted);
+        return deleted == null ? 0 : deleted;
+    }
+}
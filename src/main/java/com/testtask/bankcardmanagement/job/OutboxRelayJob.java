@@ -0,0 +1,129 @@
+package com.testtask.bankcardmanagement.job;
+
+import com.testtask.bankcardmanagement.model.OutboxEvent;
+import com.testtask.bankcardmanagement.repository.OutboxEventRepository;
+import com.testtask.bankcardmanagement.service.outbox.OutboxSink;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relay of the transactional outbox: publishes the unpublished {@link OutboxEvent} to the {@link OutboxSink} in id order
+ * and marks them published in the same transaction.
+ * <p>The events of a batch are locked ({@code SELECT ... FOR UPDATE}) while the sink publishes them, so the relays
+ * of several instances publish one after another and an event is not published by two relays at once.
+ * {@code READ COMMITTED} isolation is used, so the lock does not block the inserts of new events (no gap locks).
+ * If the sink or the commit fails, the batch is published again on the next run (at least once).</p>
+ * <p>Metrics: {@code outbox.lag.seconds} - age of the oldest unpublished event (0 if all are published),
+ * {@code outbox.published} - published events</p>
+ */
+@Slf4j
+@Component
+public class OutboxRelayJob {
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxSink outboxSink;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter published;
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    @Value("${my.outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${my.outbox.relay.batch_size:100}")
+    private int batchSize;
+
+    @Value("${my.outbox.retention_hours:24}")
+    private long retentionHours;
+
+    public OutboxRelayJob(
+            OutboxEventRepository outboxEventRepository,
+            OutboxSink outboxSink,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxSink = outboxSink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.published = meterRegistry.counter("outbox.published");
+        Gauge.builder("outbox.lag.seconds", lagMillis, lag -> lag.get() / 1000.0)
+                .description("Age of the oldest unpublished outbox event")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${my.outbox.relay.poll_ms:500}")
+    public void onSchedule() {
+        if(enabled)
+            relay();
+    }
+
+    @Scheduled(cron = "${my.outbox.purge_cron:0 30 * * * *}")
+    public void onPurgeSchedule() {
+        purge();
+    }
+
+    /**
+     * The method publishes the unpublished events in batches until a batch is not full, then updates the lag
+     * @return number of published events
+     */
+    public int relay() {
+        int relayed = 0;
+        try {
+            while (true) {
+                Integer count = transactionTemplate.execute(status -> publishBatch());
+                if(count != null) {
+                    published.increment(count);
+                    relayed += count;
+                }
+                if(count == null || count < batchSize)
+                    break;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Outbox events are not published, they will be published again on the next run", e);
+        } finally {
+            updateLag();
+        }
+
+        return relayed;
+    }
+
+    /**
+     * The method deletes the events published more than {@code my.outbox.retention_hours} ago
+     * @return number of deleted events
+     */
+    public int purge() {
+        LocalDateTime publishedBefore = LocalDateTime.now().minusHours(retentionHours);
+        Integer deleted = transactionTemplate.execute(status -> outboxEventRepository.deleteAllByPublishedAtBefore(publishedBefore));
+
+        log.info("Published outbox events deleted: {}", deleted);
+        return deleted == null ? 0 : deleted;
+    }
+
+    private int publishBatch() {
+        List<OutboxEvent> events = outboxEventRepository.findUnpublishedForUpdate(PageRequest.of(0, batchSize));
+        if(events.isEmpty())
+            return 0;
+
+        outboxSink.publish(events);
+        outboxEventRepository.markPublished(events.stream().map(OutboxEvent::getId).toList(), LocalDateTime.now());
+        return events.size();
+    }
+
+    private void updateLag() {
+        LocalDateTime oldest = outboxEventRepository.findOldestUnpublishedCreatedAt().orElse(null);
+        lagMillis.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis()));
+    }
+}
@@ -0,0 +1,144 @@
+package com.testtask.bankcardmanagement.job;
+
+import com.testtask.bankcardmanagement.model.CardSpendCounter;
+import com.testtask.bankcardmanagement.model.dto.limit.CardSpending;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import com.testtask.bankcardmanagement.repository.CardSpendCounterRepository;
+import com.testtask.bankcardmanagement.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Job for maintaining {@link CardSpendCounter}.
+ * <p>Rebuild fills the counters of the current day and month from the transactions table on startup,
+ * only if the counters table is empty (after the table is created). Disabled by default
+ * ({@code my.spend_counters.rebuild_on_startup}), the scheduled consistency check repairs the counters anyway.</p>
+ * <p>Consistency check compares the counters with the sums of the transactions, removes counters of past periods
+ * and, if repair is enabled, corrects the mismatched counters by the difference
+ * (so concurrent write-offs added to the counter are not lost).
+ * The sums are read without locks, the write-offs are not blocked while the transactions are summed.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpendCounterJob {
+    private final CardSpendCounterRepository cardSpendCounterRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${my.spend_counters.rebuild_on_startup:false}")
+    private boolean rebuildOnStartup;
+
+    @Value("${my.spend_counters.repair:true}")
+    private boolean repair;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if(rebuildOnStartup)
+            rebuild();
+    }
+
+    /**
+     * The method creates the counters of the current day and month from the transactions if there are no counters yet.
+     * The counters are added by the difference like the repair of the consistency check, the existing counters
+     * are not deleted, so the write-offs executed at the same time are neither blocked nor lost
+     * @return number of created counters
+     */
+    public int rebuild() {
+        if(cardSpendCounterRepository.count() > 0) {
+            log.info("Spend counters are not rebuilt, the counters table is not empty");
+            return 0;
+        }
+
+        int counters = reconcile(true);
+        log.info("Spend counters rebuilt, counters created: {}", counters);
+        return counters;
+    }
+
+    @Scheduled(cron = "${my.spend_counters.check_cron:0 */30 * * * *}")
+    public void onSchedule() {
+        checkConsistency();
+    }
+
+    /**
+     * The method checks that the counters of the current day and month match the transactions
+     * @return number of mismatched counters
+     */
+    public int checkConsistency() {
+        int mismatches = reconcile(repair);
+        if(mismatches > 0)
+            log.warn("Spend counters consistency check found {} mismatched counters (repair: {})", mismatches, repair);
+
+        return mismatches;
+    }
+
+    /**
+     * The method compares the counters of the current day and month with the transactions in one database transaction
+     * @param repair whether the mismatched counters are corrected by the difference
+     * @return number of mismatched counters
+     */
+    private int reconcile(boolean repair) {
+        Integer mismatches = transactionTemplate.execute(status -> {
+            LocalDate today = LocalDate.now();
+            LocalDate startThisMonth = today.withDayOfMonth(1);
+            cardSpendCounterRepository.deleteAllByPeriodTypeAndPeriodStartBefore(SpendPeriodType.DAY, today);
+            cardSpendCounterRepository.deleteAllByPeriodTypeAndPeriodStartBefore(SpendPeriodType.MONTH, startThisMonth);
+
+            List<CardSpending> actual = transactionRepository.sumAmountByTypeForDayAndMonthGroupByCard(
+                    TransactionType.WRITE_OFF,
+                    today.atStartOfDay(), today.plusDays(1).atStartOfDay(),
+                    startThisMonth.atStartOfDay(), startThisMonth.plusMonths(1).atStartOfDay()
+            );
+
+            Map<Long, BigDecimal> dayCounters = new HashMap<>();
+            Map<Long, BigDecimal> monthCounters = new HashMap<>();
+            for(CardSpendCounter counter: cardSpendCounterRepository.findAllByPeriodStartIn(List.of(today, startThisMonth))) {
+                Map<Long, BigDecimal> counters = counter.getId().getPeriodType() == SpendPeriodType.DAY ? dayCounters : monthCounters;
+                counters.put(counter.getId().getCardId(), counter.getAmount());
+            }
+
+            int found = 0;
+            for(CardSpending spending: actual) {
+                found += compare(repair, spending.cardId(), SpendPeriodType.DAY, today, spending.spentForDay(), dayCounters.remove(spending.cardId()));
+                found += compare(repair, spending.cardId(), SpendPeriodType.MONTH, startThisMonth, spending.spentForMonth(), monthCounters.remove(spending.cardId()));
+            }
+            // Counters without any write-off in the period
+            for(Map.Entry<Long, BigDecimal> counter: dayCounters.entrySet())
+                found += compare(repair, counter.getKey(), SpendPeriodType.DAY, today, BigDecimal.ZERO, counter.getValue());
+            for(Map.Entry<Long, BigDecimal> counter: monthCounters.entrySet())
+                found += compare(repair, counter.getKey(), SpendPeriodType.MONTH, startThisMonth, BigDecimal.ZERO, counter.getValue());
+
+            return found;
+        });
+
+        return Objects.requireNonNullElse(mismatches, 0);
+    }
+
+    private int compare(boolean repair, Long cardId, SpendPeriodType periodType, LocalDate periodStart, BigDecimal actual, BigDecimal counter) {
+        BigDecimal counted = counter == null ? BigDecimal.ZERO : counter;
+        BigDecimal difference = actual.subtract(counted);
+        if(difference.signum() == 0)
+            return 0;
+
+        log.warn("Spend counter mismatch: card {}, {} {}, counter {}, transactions {}",
+                cardId, periodType, periodStart, counted, actual);
+        if(repair)
+            cardSpendCounterRepository.addAmount(cardId, periodType.name(), periodStart, difference);
+
+        return 1;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -17,9 +18,14 @@ import java.util.Objects;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "cards")
+@Table(name = "cards", uniqueConstraints = @UniqueConstraint(
+        name = Card.CARD_HASH_CONSTRAINT,
+        columnNames = {"owner_id", "card_hash"}
+))
 @Entity
 public class Card {
+    public static final String CARD_HASH_CONSTRAINT = "uk_cards_owner_card_hash";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -27,7 +33,15 @@ public class Card {
     @Column(name = "encrypted_number", nullable = false)
     private String encryptedNumber;
 
-//    private String cardHash; for searching card by number
+    @Column(name = "card_hash", length = 64)
+    private String cardHash;
+
+    @Column(name = "last_four_digits", length = 4)
+    private String lastFourDigits;
+
+    // The card duplicates another card of the same owner (possible before the unique constraint), its hash is not filled
+    @Column(name = "hash_conflict", nullable = false)
+    private boolean hashConflict;
 
     @Column(name = "expiration_date", nullable = false)
     private LocalDate expirationDate;
@@ -40,15 +54,29 @@ public class Card {
     @Convert(converter = CardStatusConverter.class)
     private CardStatus status;
 
-    @Column(name = "balance", nullable = false, precision = 15, scale = 2)
+    /**
+     * Not updated by dirty checking: after the card is created, the balance is changed only by the conditional
+     * {@code UPDATE} statements of {@link com.testtask.bankcardmanagement.repository.CardRepository}
+     */
+    @Column(name = "balance", nullable = false, updatable = false, precision = 15, scale = 2)
     private BigDecimal balance;
 
     @OneToMany(mappedBy = "card", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Transaction> transactionList;
 
+    // Limits of all cards of a listing page are loaded by one query when the first of them is accessed
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "card", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Limit> limits;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Number of card transactions, increased by the balance UPDATE statements of CardRepository
+    @Column(name = "transaction_count", insertable = false, updatable = false)
+    private Long transactionCount;
+
     @Override
     public String toString() {
         return String.format("encryptedNumber: %s, expirationDate: %s, status: %s, balance: %.2f, limits: %s",
@@ -0,0 +1,52 @@
+package com.testtask.bankcardmanagement.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Amount written off from the card for one limit period (day or month).
+ * Counters are increased in the same transaction as the write-off, so a limit check reads one row per period
+ * instead of summing the transactions
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "card_spend_counters")
+@Entity
+public class CardSpendCounter {
+    @EmbeddedId
+    private CardSpendCounterId id;
+
+    @Column(name = "amount", nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Override
+    public String toString() {
+        return "CardSpendCounter{" +
+                "cardId=" + id.getCardId() +
+                ", periodType=" + id.getPeriodType() +
+                ", periodStart=" + id.getPeriodStart() +
+                ", amount=" + amount +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CardSpendCounter that = (CardSpendCounter) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -0,0 +1,47 @@
+package com.testtask.bankcardmanagement.model;
+
+import com.testtask.bankcardmanagement.converter.SpendPeriodTypeConverter;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class CardSpendCounterId implements Serializable {
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "period_type", nullable = false)
+    @Convert(converter = SpendPeriodTypeConverter.class)
+    private SpendPeriodType periodType;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CardSpendCounterId that = (CardSpendCounterId) o;
+        return Objects.equals(cardId, that.cardId)
+                && periodType == that.periodType
+                && Objects.equals(periodStart, that.periodStart);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cardId, periodType, periodStart);
+    }
+}
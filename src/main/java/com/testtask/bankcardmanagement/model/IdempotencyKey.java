@@ -0,0 +1,62 @@
+package com.testtask.bankcardmanagement.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Idempotency key of a payment request of the user with the response of the first execution.
+ * Keys are scoped by user, so different users can use the same key
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "idempotency_keys")
+@Entity
+public class IdempotencyKey {
+    @EmbeddedId
+    private IdempotencyKeyId id;
+
+    @Column(name = "operation", nullable = false)
+    private String operation;
+
+    // SHA-256 of the request body, a key reused with another request is rejected
+    @Column(name = "request_hash", nullable = false)
+    private String requestHash;
+
+    // JSON of the response, written in the transaction of the operation
+    @Column(name = "response")
+    private String response;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Override
+    public String toString() {
+        return "IdempotencyKey{" +
+                "userId=" + id.getUserId() +
+                ", key='" + id.getKey() + '\'' +
+                ", operation='" + operation + '\'' +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IdempotencyKey that = (IdempotencyKey) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -18,8 +18,17 @@ import java.util.Objects;
 @Table(name = "limits")
 @Entity
 public class Limit {
+    // Ids from the id_generators table as in Transaction, so the limits of a new card are inserted in one batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "limit_id_generator")
+    @TableGenerator(
+            name = "limit_id_generator",
+            table = "id_generators",
+            pkColumnName = "sequence_name",
+            valueColumnName = "next_val",
+            pkColumnValue = "limits",
+            allocationSize = 50
+    )
     private Long id;
 
     @ManyToOne
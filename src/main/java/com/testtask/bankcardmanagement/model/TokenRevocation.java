@@ -0,0 +1,36 @@
+package com.testtask.bankcardmanagement.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Revocation of the tokens of a user: tokens issued before {@code revokedAt} are rejected
+ * in the claims authentication mode
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "token_revocations")
+@Entity
+public class TokenRevocation {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    @Override
+    public String toString() {
+        return "TokenRevocation{" +
+                "userId=" + userId +
+                ", revokedAt=" + revokedAt +
+                '}';
+    }
+}
@@ -19,8 +19,21 @@ import java.util.Objects;
 @Table(name = "transactions")
 @Entity
 public class Transaction {
+    /**
+     * Ids are allocated from the {@code id_generators} table in blocks of 50 (pooled-lo optimizer),
+     * so the inserts can be sent in JDBC batches. With IDENTITY the id is known only after each insert,
+     * and Hibernate executes every insert separately
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "transaction_id_generator")
+    @TableGenerator(
+            name = "transaction_id_generator",
+            table = "id_generators",
+            pkColumnName = "sequence_name",
+            valueColumnName = "next_val",
+            pkColumnValue = "transactions",
+            allocationSize = 50
+    )
     private Long id;
 
     @Column(name = "amount", nullable = false, precision = 15, scale = 2)
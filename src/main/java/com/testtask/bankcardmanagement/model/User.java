@@ -2,6 +2,8 @@ package com.testtask.bankcardmanagement.model;
 
 import com.testtask.bankcardmanagement.converter.UserRoleConverter;
 import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.service.security.PrincipalCacheEvictionListener;
+import com.testtask.bankcardmanagement.service.security.TokenRevocationListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -21,6 +23,7 @@ import java.util.Objects;
 @AllArgsConstructor
 @Table(name = "users")
 @Entity
+@EntityListeners({PrincipalCacheEvictionListener.class, TokenRevocationListener.class})
 public class User implements UserDetails {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -39,6 +42,10 @@ public class User implements UserDetails {
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Card> cards;
 
+    // Number of user cards, maintained by CardService on card creation and deletion
+    @Column(name = "card_count", insertable = false, updatable = false)
+    private Long cardCount;
+
     @Override
     public String toString() {
         return "User{" +
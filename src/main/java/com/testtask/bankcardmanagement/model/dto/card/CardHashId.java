@@ -0,0 +1,11 @@
+package com.testtask.bankcardmanagement.model.dto.card;
+
+/**
+ * Id of the card found by its hash, the card itself is not loaded
+ * @param id card id
+ * @param cardHash HMAC hash of the card number
+ */
+public record CardHashId(
+        Long id,
+        String cardHash
+) { }
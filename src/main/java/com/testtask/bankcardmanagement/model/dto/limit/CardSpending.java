@@ -0,0 +1,20 @@
+package com.testtask.bankcardmanagement.model.dto.limit;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts written off from the card in the current limit periods, calculated from the transactions
+ * @param cardId card id
+ * @param spentForDay amount written off since the start of the current day
+ * @param spentForMonth amount written off since the start of the current month
+ */
+public record CardSpending(
+        Long cardId,
+        BigDecimal spentForDay,
+        BigDecimal spentForMonth
+) {
+    public CardSpending {
+        spentForDay = spentForDay == null ? BigDecimal.ZERO : spentForDay;
+        spentForMonth = spentForMonth == null ? BigDecimal.ZERO : spentForMonth;
+    }
+}
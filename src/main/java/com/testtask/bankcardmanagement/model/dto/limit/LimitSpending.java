@@ -0,0 +1,19 @@
+package com.testtask.bankcardmanagement.model.dto.limit;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts already written off from the card in the current limit periods
+ * @param spentForDay amount written off since the start of the current day
+ * @param spentForMonth amount written off since the start of the current month
+ */
+public record LimitSpending(
+        BigDecimal spentForDay,
+        BigDecimal spentForMonth
+) {
+    public LimitSpending {
+        // SUM over no rows returns NULL
+        spentForDay = spentForDay == null ? BigDecimal.ZERO : spentForDay;
+        spentForMonth = spentForMonth == null ? BigDecimal.ZERO : spentForMonth;
+    }
+}
@@ -0,0 +1,22 @@
+package com.testtask.bankcardmanagement.model.dto.page;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Page of a list read by cursor (keyset pagination)")
+public record CursorPage<T>(
+        @Schema(description = "Elements of the page")
+        List<T> content,
+
+        @Schema(description = "Requested page size", example = "10")
+        int size,
+
+        @Schema(description = "Cursor of the next page, null if this page is the last one", example = "MjAyNS0wMS0wMVQxMDowMF8xNQ")
+        String nextCursor
+) {
+    @Schema(description = "Whether there is a next page")
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.testtask.bankcardmanagement.model.dto.transaction;
+
+import com.testtask.bankcardmanagement.model.enums.BatchItemStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Result of one transfer of the batch")
+public record TransactionBatchItemResult(
+        @Schema(description = "Index of the transfer in the request", example = "0")
+        int index,
+
+        @Schema(description = "Result status", example = "COMPLETED, REJECTED")
+        BatchItemStatus status,
+
+        @Schema(description = "Write-off transaction of the sender card, null if the transfer is rejected")
+        TransactionResponse transaction,
+
+        @Schema(description = "Reason of the rejection, null if the transfer is completed", example = "You don't have a card with that number.")
+        String error
+) { }
@@ -0,0 +1,26 @@
+package com.testtask.bankcardmanagement.model.dto.transaction;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+
+import java.math.BigDecimal;
+
+@Schema(description = "One transfer of the batch")
+public record TransactionBatchTransferItem(
+        @Schema(description = "Recipient card number", example = "**** **** **** 4321")
+        @NotNull
+        @Pattern(regexp = "^\\d{16}$", message = "Invalid card number,should be - ____ ____ ____ ____")
+        String toCardNumber,
+
+        @Schema(description = "The amount of funds involved in the transaction", example = "111")
+        @NotNull
+        @Positive
+        @DecimalMin(value = "0.00", inclusive = false, message = "Min value 0.00")
+        BigDecimal amount,
+
+        @Schema(description = "Transaction Description, the description of the batch if not set", example = "Some text")
+        String description
+) { }
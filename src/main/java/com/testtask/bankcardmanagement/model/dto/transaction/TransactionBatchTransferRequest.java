@@ -0,0 +1,26 @@
+package com.testtask.bankcardmanagement.model.dto.transaction;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Request object for transferring funds from one card to several cards")
+public record TransactionBatchTransferRequest(
+        @Schema(description = "The card number from which funds will be debited", example = "**** **** **** 1234")
+        @NotNull
+        @Pattern(regexp = "^\\d{16}$", message = "Invalid card number,should be - ____ ____ ____ ____")
+        String fromCardNumber,
+
+        @Schema(description = "Transfers of the batch")
+        @NotEmpty
+        @Size(max = 1000, message = "Max 1000 transfers in a batch")
+        List<@Valid @NotNull TransactionBatchTransferItem> items,
+
+        @Schema(description = "Transaction Description", example = "Salary for May")
+        String description
+) { }
@@ -0,0 +1,21 @@
+package com.testtask.bankcardmanagement.model.dto.transaction;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Schema(description = "Result of the batch transfer")
+public record TransactionBatchTransferResponse(
+        @Schema(description = "Amount written off from the sender card for the completed transfers", example = "1500")
+        BigDecimal totalAmount,
+
+        @Schema(description = "Number of completed transfers", example = "10")
+        int completed,
+
+        @Schema(description = "Number of rejected transfers", example = "1")
+        int rejected,
+
+        @Schema(description = "Results in the order of the request items")
+        List<TransactionBatchItemResult> results
+) { }
@@ -0,0 +1,26 @@
+package com.testtask.bankcardmanagement.model.dto.transaction;
+
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Posted transaction published to the downstream systems (statements, fraud, notifications), the payload of the outbox event
+ * @param transactionId transaction id, a consumer can use it to skip an event delivered again
+ * @param cardId id of the card of the transaction
+ * @param type transaction type
+ * @param amount the amount of the transaction
+ * @param targetMaskedCard masked card number of the other side of a transfer, {@code null} for a write-off
+ * @param transactionDate date of the operation
+ * @param description transaction description
+ */
+public record TransactionEvent(
+        Long transactionId,
+        Long cardId,
+        TransactionType type,
+        BigDecimal amount,
+        String targetMaskedCard,
+        LocalDateTime transactionDate,
+        String description
+) { }
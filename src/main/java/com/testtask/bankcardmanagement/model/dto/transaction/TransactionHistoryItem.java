@@ -0,0 +1,31 @@
+package com.testtask.bankcardmanagement.model.dto.transaction;
+
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Transaction row of the card history, selected by a JPQL constructor expression without loading the entity
+ */
+@Schema(description = "Transaction of the card history")
+public record TransactionHistoryItem(
+        @Schema(description = "Transaction id", example = "15")
+        Long id,
+
+        @Schema(description = "The amount of funds involved in the transaction", example = "111")
+        BigDecimal amount,
+
+        @Schema(description = "Transaction type", example = "WRITE_OFF, REPLENISHMENT")
+        TransactionType type,
+
+        @Schema(description = "Masked target card number", example = "**** **** **** 1234")
+        String targetCard,
+
+        @Schema(description = "Date of the operation")
+        LocalDateTime datetime,
+
+        @Schema(description = "Transaction Description", example = "Some text")
+        String description
+) { }
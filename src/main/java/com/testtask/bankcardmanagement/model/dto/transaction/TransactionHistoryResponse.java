@@ -0,0 +1,27 @@
+package com.testtask.bankcardmanagement.model.dto.transaction;
+
+import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Page of the card transaction history, the card is included once for all transactions")
+public record TransactionHistoryResponse(
+        @Schema(description = "Card response object")
+        CardResponse card,
+
+        @Schema(description = "Transactions of the page")
+        List<TransactionHistoryItem> transactions,
+
+        @Schema(description = "Page number", example = "0")
+        int page,
+
+        @Schema(description = "Requested page size", example = "10")
+        int size,
+
+        @Schema(description = "Whether there is a next page")
+        boolean hasNext,
+
+        @Schema(description = "Total number of transactions, null if not counted (SLICE count mode)", example = "125")
+        Long totalElements
+) { }
@@ -0,0 +1,15 @@
+package com.testtask.bankcardmanagement.model.enums;
+
+/**
+ * Result of one item of a batch operation
+ */
+public enum BatchItemStatus {
+    /**
+     * The item is executed and committed with the batch
+     */
+    COMPLETED,
+    /**
+     * The item is not executed, the other items of the batch are not affected
+     */
+    REJECTED
+}
@@ -0,0 +1,19 @@
+package com.testtask.bankcardmanagement.model.enums;
+
+/**
+ * How the total number of elements is calculated for a paged list
+ */
+public enum CountMode {
+    /**
+     * No total, only whether there is a next page (no count query)
+     */
+    SLICE,
+    /**
+     * Exact total by a count query
+     */
+    EXACT,
+    /**
+     * Total from the maintained counters, without filters
+     */
+    APPROXIMATE
+}
@@ -0,0 +1,6 @@
+package com.testtask.bankcardmanagement.model.enums;
+
+public enum SpendPeriodType {
+    DAY,
+    MONTH
+}
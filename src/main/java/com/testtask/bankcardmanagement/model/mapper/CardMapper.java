@@ -21,7 +21,7 @@ public class CardMapper {
         UserResponse userResponse = userMapper.toUserResponse(card.getUser());
         List<LimitResponse> limitResponse = limitMapper.toListLimitResponse(card.getLimits());
         return new CardResponse(
-                maskCardNumber(card.getEncryptedNumber()),
+                maskCardNumber(card),
                 card.getExpirationDate(),
                 userResponse,
                 card.getStatus(),
@@ -30,9 +30,17 @@ public class CardMapper {
         );
     }
 
-    private String maskCardNumber(String encryptedNumber) {
-        String decryptedNumber = aesEncryption.decrypt(encryptedNumber);
-        return "**** **** **** " + decryptedNumber.substring(12);
+    /**
+     * The method masks the card number using the last 4 digits stored with the card, without decryption.
+     * Cards not yet processed by {@code CardBackfillJob} have no last 4 digits, their number is decrypted
+     * @param card card whose number is masked
+     * @return {@code String} masked card number in the format "**** **** **** xxxx"
+     */
+    private String maskCardNumber(Card card) {
+        String lastFourDigits = card.getLastFourDigits();
+        if(lastFourDigits == null)
+            lastFourDigits = aesEncryption.decrypt(card.getEncryptedNumber()).substring(12);
+        return "**** **** **** " + lastFourDigits;
     }
 
 }
@@ -1,8 +1,12 @@
 package com.testtask.bankcardmanagement.model.mapper;
 
+import com.testtask.bankcardmanagement.model.Card;
 import com.testtask.bankcardmanagement.model.Transaction;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Component;
 
 @RequiredArgsConstructor
@@ -20,4 +24,16 @@ public class TransactionMapper {
                 transaction.getDescription()
         );
     }
+
+    public TransactionHistoryResponse toTransactionHistoryResponse(Card card, Slice<TransactionHistoryItem> transactions,
+                                                                   Long totalElements) {
+        return new TransactionHistoryResponse(
+                cardMapper.toCardResponse(card),
+                transactions.getContent(),
+                transactions.getNumber(),
+                transactions.getSize(),
+                transactions.hasNext(),
+                totalElements
+        );
+    }
 }
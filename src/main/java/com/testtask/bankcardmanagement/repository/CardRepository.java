@@ -2,20 +2,73 @@ package com.testtask.bankcardmanagement.repository;
 
 import com.testtask.bankcardmanagement.model.Card;
 import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.card.CardHashId;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card> {
-    @Query("SELECT c.encryptedNumber FROM Card c WHERE c.user.id = :ownerId")
-    List<String> findEncryptedNumberByUserId(@Param("ownerId") Long ownerId);
     List<Card> findAllByUser(User user);
+    Optional<Card> findByUserAndCardHash(User user, String cardHash);
+    @Query("SELECT c.id FROM Card c WHERE c.user = :owner AND c.cardHash = :cardHash")
+    Optional<Long> findIdByUserAndCardHash(@Param("owner") User owner, @Param("cardHash") String cardHash);
+    @Query("SELECT new com.testtask.bankcardmanagement.model.dto.card.CardHashId(c.id, c.cardHash) " +
+            "FROM Card c WHERE c.user = :owner AND c.cardHash IN :cardHashes")
+    List<CardHashId> findIdsByUserAndCardHashes(@Param("owner") User owner, @Param("cardHashes") Collection<String> cardHashes);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+    List<Card> findAllByIdInOrderByIdAsc(Collection<Long> ids);
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.version = c.version + 1, c.transactionCount = c.transactionCount + 1 " +
+            "WHERE c.id = :id AND c.version = :version AND c.status = :status AND c.balance >= :amount")
+    int withdraw(@Param("id") Long id, @Param("version") Long version,
+                 @Param("status") CardStatus status, @Param("amount") BigDecimal amount);
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.version = c.version + 1, c.transactionCount = c.transactionCount + 1 " +
+            "WHERE c.id = :id")
+    int deposit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+    // Batch transfer: one update of the card for several transactions
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.version = c.version + 1, c.transactionCount = c.transactionCount + :count " +
+            "WHERE c.id = :id AND c.version = :version AND c.status = :status AND c.balance >= :amount")
+    int withdrawBatch(@Param("id") Long id, @Param("version") Long version,
+                      @Param("status") CardStatus status, @Param("amount") BigDecimal amount, @Param("count") long count);
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.version = c.version + 1, c.transactionCount = c.transactionCount + :count " +
+            "WHERE c.id = :id")
+    int depositBatch(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("count") long count);
+    @Query("SELECT c.id FROM Card c WHERE (c.lastFourDigits IS NULL OR (c.cardHash IS NULL AND c.hashConflict = false)) " +
+            "AND c.id > :lastId ORDER BY c.id")
+    List<Long> findIdsToBackfill(@Param("lastId") Long lastId, Pageable pageable);
+    @Query("SELECT c.transactionCount FROM Card c WHERE c.id = :id")
+    Optional<Long> findTransactionCountById(@Param("id") Long id);
+    // InnoDB estimate of the number of rows, without scanning the table
+    @Query(value = "SELECT COALESCE(TABLE_ROWS, 0) FROM information_schema.TABLES " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'cards'", nativeQuery = true)
+    long estimateCount();
+    // The owner is mapped to every card response, so it is loaded by the same query
+    @Override
+    @EntityGraph(attributePaths = "user")
+    Page<Card> findAll(@Nullable Specification<Card> spec, Pageable pageable);
     boolean existsByIdAndUserId(Long cardId, Long userId);
     boolean existsById(@NonNull Long cardId);
 }
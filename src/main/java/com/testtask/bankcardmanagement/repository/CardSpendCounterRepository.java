@@ -0,0 +1,36 @@
+package com.testtask.bankcardmanagement.repository;
+
+import com.testtask.bankcardmanagement.model.CardSpendCounter;
+import com.testtask.bankcardmanagement.model.CardSpendCounterId;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CardSpendCounterRepository extends JpaRepository<CardSpendCounter, CardSpendCounterId> {
+    @Modifying
+    @Query(value = "INSERT INTO card_spend_counters (card_id, period_type, period_start, amount) " +
+            "VALUES (:cardId, :periodType, :periodStart, :amount) AS new_counter " +
+            "ON DUPLICATE KEY UPDATE amount = card_spend_counters.amount + new_counter.amount",
+            nativeQuery = true)
+    int addAmount(@Param("cardId") Long cardId,
+                  @Param("periodType") String periodType,
+                  @Param("periodStart") LocalDate periodStart,
+                  @Param("amount") BigDecimal amount);
+
+    @Query("SELECT c FROM CardSpendCounter c WHERE c.id.periodStart IN :periodStarts")
+    List<CardSpendCounter> findAllByPeriodStartIn(@Param("periodStarts") Collection<LocalDate> periodStarts);
+
+    @Modifying
+    @Query("DELETE FROM CardSpendCounter c WHERE c.id.periodType = :periodType AND c.id.periodStart < :periodStart")
+    int deleteAllByPeriodTypeAndPeriodStartBefore(@Param("periodType") SpendPeriodType periodType,
+                                                  @Param("periodStart") LocalDate periodStart);
+}
@@ -0,0 +1,37 @@
+package com.testtask.bankcardmanagement.repository;
+
+import com.testtask.bankcardmanagement.model.IdempotencyKey;
+import com.testtask.bankcardmanagement.model.IdempotencyKeyId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, IdempotencyKeyId> {
+    /**
+     * Inserts the key if it does not exist. If the same key is inserted by a transaction that is not finished yet,
+     * the statement waits for it: after its commit the key exists (0 is returned), after its rollback the key is inserted
+     * @return 1 if the key is inserted, 0 if it already exists
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO idempotency_keys (user_id, idempotency_key, operation, request_hash, created_at) " +
+            "VALUES (:userId, :key, :operation, :requestHash, :createdAt)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId,
+                       @Param("key") String key,
+                       @Param("operation") String operation,
+                       @Param("requestHash") String requestHash,
+                       @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.response = :response WHERE k.id.userId = :userId AND k.id.key = :key")
+    int saveResponse(@Param("userId") Long userId, @Param("key") String key, @Param("response") String response);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < :createdAt")
+    int deleteAllByCreatedAtBefore(@Param("createdAt") LocalDateTime createdAt);
+}
@@ -0,0 +1,73 @@
+package com.testtask.bankcardmanagement.repository;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Subgraph;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Reads a page of entities by {@link Specification} without a count query
+ * ({@code JpaSpecificationExecutor.findAll(Specification, Pageable)} always counts the total when the page is full).
+ * One extra row is selected to find out whether there is a next page.
+ * The associations listed in {@code attributePaths} are loaded by the same query (load graph), like {@code @EntityGraph}
+ */
+@Repository
+@RequiredArgsConstructor
+public class SliceRepository {
+    private final EntityManager entityManager;
+
+    public <T> Slice<T> findAll(Class<T> domainClass, Specification<T> spec, Pageable pageable, String... attributePaths) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = criteriaBuilder.createQuery(domainClass);
+        Root<T> root = query.from(domainClass);
+        query.select(root);
+
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if(predicate != null)
+            query.where(predicate);
+        if(pageable.getSort().isSorted())
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+
+        List<T> content = entityManager.createQuery(query)
+                .setHint("jakarta.persistence.loadgraph", createEntityGraph(domainClass, attributePaths))
+                .setFirstResult(Math.toIntExact(pageable.getOffset()))
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    /**
+     * The method creates an entity graph from the attribute paths, nested attributes are separated by a dot ({@code "card.user"})
+     */
+    private <T> EntityGraph<T> createEntityGraph(Class<T> domainClass, String... attributePaths) {
+        EntityGraph<T> entityGraph = entityManager.createEntityGraph(domainClass);
+        for(String attributePath: attributePaths) {
+            String[] attributes = attributePath.split("\\.");
+            if(attributes.length == 1) {
+                entityGraph.addAttributeNodes(attributes[0]);
+                continue;
+            }
+
+            Subgraph<Object> subgraph = entityGraph.addSubgraph(attributes[0]);
+            for(int i = 1; i < attributes.length - 1; i++)
+                subgraph = subgraph.addSubgraph(attributes[i]);
+            subgraph.addAttributeNodes(attributes[attributes.length - 1]);
+        }
+
+        return entityGraph;
+    }
+}
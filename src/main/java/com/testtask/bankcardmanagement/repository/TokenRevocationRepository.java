@@ -0,0 +1,26 @@
+package com.testtask.bankcardmanagement.repository;
+
+import com.testtask.bankcardmanagement.model.TokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+    @Modifying
+    @Query(value = "INSERT INTO token_revocations (user_id, revoked_at) VALUES (:userId, :revokedAt) AS new_revocation " +
+            "ON DUPLICATE KEY UPDATE revoked_at = GREATEST(token_revocations.revoked_at, new_revocation.revoked_at)",
+            nativeQuery = true)
+    int revoke(@Param("userId") Long userId, @Param("revokedAt") Instant revokedAt);
+
+    List<TokenRevocation> findAllByRevokedAtAfter(Instant revokedAt);
+
+    @Modifying
+    @Query("DELETE FROM TokenRevocation r WHERE r.revokedAt < :revokedAt")
+    int deleteAllByRevokedAtBefore(@Param("revokedAt") Instant revokedAt);
+}
@@ -1,10 +1,74 @@
 package com.testtask.bankcardmanagement.repository;
 
 import com.testtask.bankcardmanagement.model.Transaction;
+import com.testtask.bankcardmanagement.model.dto.limit.CardSpending;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
+    String HISTORY_ITEM_SELECT = "SELECT new com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem(" +
+            "t.id, t.amount, t.type, t.targetMaskedCard, t.transactionDate, t.description) ";
+    // Filter of the card history, a null parameter disables its condition
+    String HISTORY_FROM = "FROM Transaction t " +
+            "WHERE t.card.id = :cardId " +
+            "AND (:type IS NULL OR t.type = :type) " +
+            "AND (:fromDate IS NULL OR t.transactionDate > :fromDate) " +
+            "AND (:toDate IS NULL OR t.transactionDate < :toDate)";
+
+    // The card and its owner are mapped to every transaction response, so they are loaded by the same query
+    @Override
+    @EntityGraph(attributePaths = {"card", "card.user"})
+    Page<Transaction> findAll(@Nullable Specification<Transaction> spec, Pageable pageable);
+    @Query("SELECT new com.testtask.bankcardmanagement.model.dto.limit.CardSpending(" +
+            "t.card.id, " +
+            "SUM(CASE WHEN t.transactionDate >= :dayStart AND t.transactionDate < :dayEnd THEN t.amount END), " +
+            "SUM(t.amount)) " +
+            "FROM Transaction t " +
+            "WHERE t.type = :type " +
+            "AND t.transactionDate >= :monthStart AND t.transactionDate < :monthEnd " +
+            "GROUP BY t.card.id")
+    List<CardSpending> sumAmountByTypeForDayAndMonthGroupByCard(@Param("type") TransactionType type,
+                                                                @Param("dayStart") LocalDateTime dayStart,
+                                                                @Param("dayEnd") LocalDateTime dayEnd,
+                                                                @Param("monthStart") LocalDateTime monthStart,
+                                                                @Param("monthEnd") LocalDateTime monthEnd);
+    @Query(value = HISTORY_ITEM_SELECT + HISTORY_FROM, countQuery = "SELECT COUNT(t.id) " + HISTORY_FROM)
+    Page<TransactionHistoryItem> findHistoryByCard(@Param("cardId") Long cardId,
+                                                   @Param("type") TransactionType type,
+                                                   @Param("fromDate") LocalDateTime fromDate,
+                                                   @Param("toDate") LocalDateTime toDate,
+                                                   Pageable pageable);
+    // MySQL driver streams the rows one by one only with fetch size Integer.MIN_VALUE, otherwise it reads the whole result
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query(HISTORY_ITEM_SELECT + HISTORY_FROM + " ORDER BY t.transactionDate, t.id")
+    Stream<TransactionHistoryItem> streamHistoryByCard(@Param("cardId") Long cardId,
+                                                       @Param("type") TransactionType type,
+                                                       @Param("fromDate") LocalDateTime fromDate,
+                                                       @Param("toDate") LocalDateTime toDate);
+    // Slice reads one extra row instead of the count query
+    @Query(HISTORY_ITEM_SELECT + HISTORY_FROM)
+    Slice<TransactionHistoryItem> findHistorySliceByCard(@Param("cardId") Long cardId,
+                                                         @Param("type") TransactionType type,
+                                                         @Param("fromDate") LocalDateTime fromDate,
+                                                         @Param("toDate") LocalDateTime toDate,
+                                                         Pageable pageable);
 }
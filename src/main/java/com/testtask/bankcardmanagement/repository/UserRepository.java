@@ -2,6 +2,9 @@ package com.testtask.bankcardmanagement.repository;
 
 import com.testtask.bankcardmanagement.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +13,9 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findUserByEmail(String email);
     boolean existsByEmail(String email);
+    @Query("SELECT u.cardCount FROM User u WHERE u.email = :email")
+    Optional<Long> findCardCountByEmail(@Param("email") String email);
+    @Modifying
+    @Query("UPDATE User u SET u.cardCount = u.cardCount + :delta WHERE u.id = :id")
+    int addCardCount(@Param("id") Long id, @Param("delta") long delta);
 }
@@ -7,15 +7,19 @@ import com.testtask.bankcardmanagement.model.dto.card.CardRequest;
 import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
 import com.testtask.bankcardmanagement.model.dto.limit.LimitUpdateRequest;
 import jakarta.validation.constraints.NotNull;
-import org.springframework.data.domain.Page;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
+import org.springframework.data.domain.Slice;
 import org.springframework.lang.NonNull;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface CardService {
     CardResponse createCard(CardRequest cardRequest);
-    Page<CardResponse> getAllCards(CardParamFilter cardParamFilter, int page, int size, List<String> sortList, String sortOrder);
-    Page<CardResponse> getAllCardsForCurrentUser(CardParamFilter cardParamFilter, int page, int size);
+    Slice<CardResponse> getAllCards(CardParamFilter cardParamFilter, int page, int size, List<String> sortList, String sortOrder,
+                                    CountMode countMode);
+    Slice<CardResponse> getAllCardsForCurrentUser(CardParamFilter cardParamFilter, int page, int size, CountMode countMode);
     CardResponse blockCard(Long id);
     CardResponse activateCard(Long id);
     void deleteCard(Long id);
@@ -24,4 +28,7 @@ public interface CardService {
     CardResponse updateCardLimit(Long cardId, LimitUpdateRequest limitUpdateRequest);
     boolean existById(@NonNull Long cardId);
     Card findCardByNumber(String cardNumber, User owner);
+    Long findCardIdByNumber(String cardNumber, User owner);
+    Map<String, Long> findCardIdsByNumbers(Collection<String> cardNumbers, User owner);
+    List<Card> lockCards(Collection<Long> cardIds);
 }
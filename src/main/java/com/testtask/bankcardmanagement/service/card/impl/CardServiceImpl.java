@@ -1,6 +1,7 @@
 package com.testtask.bankcardmanagement.service.card.impl;
 
 import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
 import com.testtask.bankcardmanagement.exception.card.CardBalanceException;
 import com.testtask.bankcardmanagement.exception.card.CardDuplicateException;
 import com.testtask.bankcardmanagement.exception.card.CardNotAvailableException;
@@ -10,28 +11,41 @@ import com.testtask.bankcardmanagement.exception.user.UserNotFoundException;
 import com.testtask.bankcardmanagement.model.Card;
 import com.testtask.bankcardmanagement.model.Limit;
 import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.card.CardHashId;
 import com.testtask.bankcardmanagement.model.dto.card.CardParamFilter;
 import com.testtask.bankcardmanagement.model.dto.card.CardRequest;
 import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
 import com.testtask.bankcardmanagement.model.dto.limit.LimitRequest;
 import com.testtask.bankcardmanagement.model.dto.limit.LimitUpdateRequest;
 import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
 import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.LockingMode;
 import com.testtask.bankcardmanagement.model.mapper.CardMapper;
 import com.testtask.bankcardmanagement.model.mapper.LimitMapper;
 import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.SliceRepository;
 import com.testtask.bankcardmanagement.repository.UserRepository;
 import com.testtask.bankcardmanagement.service.card.CardService;
 import com.testtask.bankcardmanagement.service.security.SecurityUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -44,10 +58,15 @@ import java.util.stream.Collectors;
 public class CardServiceImpl implements CardService {
     private final CardRepository cardRepository;
     private final AESEncryption aesEncryption;
+    private final HMACHashing hmacHashing;
     private final UserRepository userRepository;
+    private final SliceRepository sliceRepository;
     private final CardMapper cardMapper;
     private final LimitMapper limitMapper;
 
+    @Value("${my.payment.locking_mode:PESSIMISTIC}")
+    private LockingMode lockingMode = LockingMode.PESSIMISTIC;
+
     /**
      * The method creates a new card for the specified user
      * @param cardRequest request object for creating a card
@@ -56,8 +75,10 @@ public class CardServiceImpl implements CardService {
      * @see CardResponse
      * @throws UserNotFoundException If the user with the specified email does not exist
      * @throws CardDuplicateException If the user already has a card with the same number
+     * @see HMACHashing
      */
     @Override
+    @Transactional
     public CardResponse createCard(CardRequest cardRequest) {
         Optional<User> optionalUser = userRepository.findUserByEmail(cardRequest.ownerEmail());
         if(optionalUser.isEmpty())
@@ -65,9 +86,6 @@ public class CardServiceImpl implements CardService {
 
         User owner = optionalUser.get();
 
-        if(isCardNumberDuplicate(owner, cardRequest.cardNumber()))
-            throw new CardDuplicateException("A card with this number already exists.");
-
         List<LimitRequest> limitRequestList = cardRequest.limits();
         if(limitRequestList == null || limitRequestList.isEmpty())
             limitRequestList = List.of(new LimitRequest(LimitType.NO_LIMIT, null));
@@ -75,23 +93,33 @@ public class CardServiceImpl implements CardService {
         Card card = new Card();
         card.setUser(owner);
         card.setEncryptedNumber(aesEncryption.encrypt(cardRequest.cardNumber()));
+        card.setCardHash(hmacHashing.hash(cardRequest.cardNumber()));
+        card.setLastFourDigits(cardRequest.cardNumber().substring(12));
         card.setExpirationDate(cardRequest.expirationDate());
         card.setStatus(CardStatus.ACTIVE);
         card.setBalance(BigDecimal.ZERO);
 
-        Card savedCard = cardRepository.save(card);
-
         List<Limit> limits = limitRequestList.stream()
                 .map(limitRequest -> {
                     Limit limit = limitMapper.toLimit(limitRequest);
-                    limit.setCard(savedCard);
+                    limit.setCard(card);
                     return limit;
                 })
                 .collect(Collectors.toList());
+        card.setLimits(limits);
+
+        // Duplicate check is done by the unique constraint (owner_id, card_hash) on insert
+        Card savedCard;
+        try {
+            savedCard = cardRepository.saveAndFlush(card);
+        } catch (DataIntegrityViolationException e) {
+            if(isCardHashConflict(e))
+                throw new CardDuplicateException("A card with this number already exists.");
+            throw e;
+        }
+        userRepository.addCardCount(owner.getId(), 1);
 
-        savedCard.setLimits(limits);
-        Card savedWithLimits = cardRepository.save(savedCard);
-        return cardMapper.toCardResponse(savedWithLimits);
+        return cardMapper.toCardResponse(savedCard);
     }
 
     /**
@@ -101,25 +129,26 @@ public class CardServiceImpl implements CardService {
      * @param size page size
      * @param sortList list of fields to sort by
      * @param sortOrder sort direction (ASC - ascending / DESC - descending)
-     * @return an object {@link Page<CardResponse>} representing a page of cards
-     * @see Page
+     * @param countMode how the total number of cards is calculated.
+     *                  The approximate total is the card counter of the user if the email filter is set,
+     *                  otherwise the table row estimate of the database
+     * @return an object {@link Slice<CardResponse>} representing a page of cards ({@link Page} for exact and approximate totals)
+     * @see Slice
+     * @see CountMode
      * @see CardParamFilter
      * @see CardSpecification
      */
     @Override
-    public Page<CardResponse> getAllCards(CardParamFilter cardParamFilter, int page, int size, List<String> sortList, String sortOrder) {
+    @Transactional(readOnly = true)
+    public Slice<CardResponse> getAllCards(CardParamFilter cardParamFilter, int page, int size, List<String> sortList, String sortOrder,
+                                           CountMode countMode) {
         List<Sort.Order> sortOrderList = createSortOrder(sortList, sortOrder);
         Pageable pageable = PageRequest.of(page, size, Sort.by(sortOrderList));
         Specification<Card> cardSpec = CardSpecification.build(cardParamFilter);
 
-        List<CardResponse> foundCards = cardRepository.findAll(cardSpec, pageable).stream()
-                .map(cardMapper::toCardResponse)
-                .toList();
-
-        return new PageImpl<>(
-                foundCards,
-                pageable,
-                foundCards.size());
+        return findCards(cardSpec, pageable, countMode, () -> cardParamFilter.userEmail() != null
+                ? getCardCount(cardParamFilter.userEmail())
+                : cardRepository.estimateCount());
     }
 
     /**
@@ -127,12 +156,15 @@ public class CardServiceImpl implements CardService {
      * @param cardParamFilter request object containing filter criteria
      * @param page page number
      * @param size page size
-     * @return an object {@link Page<CardResponse>} representing a page of cards
+     * @param countMode how the total number of cards is calculated, the approximate total is the card counter of the user
+     * @return an object {@link Slice<CardResponse>} representing a page of cards ({@link Page} for exact and approximate totals)
      * @see CardResponse
+     * @see CountMode
      * @see CardSpecification
      */
     @Override
-    public Page<CardResponse> getAllCardsForCurrentUser(CardParamFilter cardParamFilter, int page, int size) {
+    @Transactional(readOnly = true)
+    public Slice<CardResponse> getAllCardsForCurrentUser(CardParamFilter cardParamFilter, int page, int size, CountMode countMode) {
         User user = SecurityUtil.getCurrentUser();
         CardParamFilter userFilter = new CardParamFilter(
                 cardParamFilter.status(),
@@ -142,15 +174,7 @@ public class CardServiceImpl implements CardService {
         Pageable pageable = PageRequest.of(page, size);
         Specification<Card> cardSpec = CardSpecification.build(userFilter);
 
-        List<CardResponse> foundCards = cardRepository.findAll(cardSpec, pageable).stream()
-                .map(cardMapper::toCardResponse)
-                .toList();
-
-        return new PageImpl<>(
-                foundCards,
-                pageable,
-                foundCards.size()
-        );
+        return findCards(cardSpec, pageable, countMode, () -> getCardCount(user.getEmail()));
     }
 
     /**
@@ -201,6 +225,7 @@ public class CardServiceImpl implements CardService {
      * @throws CardBalanceException If the card balance is not zero
      */
     @Override
+    @Transactional
     public void deleteCard(Long id) {
         Optional<Card> optionalCard = cardRepository.findById(id);
         if(optionalCard.isEmpty())
@@ -213,6 +238,7 @@ public class CardServiceImpl implements CardService {
             throw new CardBalanceException("Cannot delete a card with a non-zero amount.");
 
         cardRepository.delete(card);
+        userRepository.addCardCount(card.getUser().getId(), -1);
     }
 
     /**
@@ -296,23 +322,105 @@ public class CardServiceImpl implements CardService {
     }
 
     /**
-     * The method finds the user's card by its full number
-     * <p><b>The current implementation will be changed</b></p>
+     * The method finds the user's card by its full number.
+     * The search is performed by the card hash (blind index), so no card number is decrypted
      * @param cardNumber card number as a string to find
      * @param owner object {@link User}, to whom the sought card belongs
      * @return object {@link Card}
+     * @see HMACHashing
      * @throws CardNotFoundException If the card with the specified number is not found on the user's account
      */
-    @Deprecated
     @Override
     public Card findCardByNumber(String cardNumber, User owner) {
-        //TODO Temporary solution (rewrite to cardHash)
-        return cardRepository.findAllByUser(owner).stream()
-                .filter(card -> aesEncryption.decrypt(card.getEncryptedNumber()).equals(cardNumber))
-                .findFirst()
+        return cardRepository.findByUserAndCardHash(owner, hmacHashing.hash(cardNumber))
+                .orElseThrow(() -> new CardNotFoundException("You don't have a card with that number - " + cardNumber + "."));
+    }
+
+    /**
+     * The method finds the id of the user's card by its full number without loading the card.
+     * Used before {@link #lockCards(Collection)}, so the card state is read only under the lock
+     * @param cardNumber card number as a string to find
+     * @param owner object {@link User}, to whom the sought card belongs
+     * @return id of the card
+     * @see HMACHashing
+     * @throws CardNotFoundException If the card with the specified number is not found on the user's account
+     */
+    @Override
+    public Long findCardIdByNumber(String cardNumber, User owner) {
+        return cardRepository.findIdByUserAndCardHash(owner, hmacHashing.hash(cardNumber))
                 .orElseThrow(() -> new CardNotFoundException("You don't have a card with that number - " + cardNumber + "."));
     }
 
+    /**
+     * The method finds the ids of the user's cards by their full numbers with one query by the card hashes,
+     * without loading the cards
+     * @param cardNumbers card numbers to find
+     * @param owner object {@link User}, to whom the sought cards belong
+     * @return ids of the found cards by card number, numbers that are not found on the user's account are missing
+     * @see HMACHashing
+     */
+    @Override
+    public Map<String, Long> findCardIdsByNumbers(Collection<String> cardNumbers, User owner) {
+        Map<String, String> numbersByHash = cardNumbers.stream()
+                .distinct()
+                .collect(Collectors.toMap(hmacHashing::hash, Function.identity()));
+
+        return cardRepository.findIdsByUserAndCardHashes(owner, numbersByHash.keySet()).stream()
+                .collect(Collectors.toMap(card -> numbersByHash.get(card.cardHash()), CardHashId::id));
+    }
+
+    /**
+     * The method loads the cards that will be changed in the current transaction, depending on {@link LockingMode}:
+     * <ul>
+     *     <li>{@code PESSIMISTIC} - with a write lock ({@code SELECT ... FOR UPDATE}) until the end of the transaction.
+     *     The rows are locked in ascending id order, so two transfers between the same cards in opposite directions
+     *     wait for each other instead of deadlocking</li>
+     *     <li>{@code OPTIMISTIC} - without a lock, a concurrent change is detected by {@link Card#getVersion()} on commit
+     *     and the operation is repeated (see {@code OptimisticRetry})</li>
+     * </ul>
+     * Must be called inside a transaction
+     * @param cardIds ids of the cards to load, duplicates are ignored
+     * @return cards ordered by id
+     * @throws CardNotFoundException If any of the cards is not found
+     */
+    @Override
+    public List<Card> lockCards(Collection<Long> cardIds) {
+        Set<Long> sortedIds = new TreeSet<>(cardIds);
+        List<Card> cards = lockingMode == LockingMode.PESSIMISTIC
+                ? cardRepository.findAllByIdForUpdate(sortedIds)
+                : cardRepository.findAllByIdInOrderByIdAsc(sortedIds);
+        if(cards.size() != sortedIds.size())
+            throw new CardNotFoundException("The card with such id not found.");
+
+        return cards;
+    }
+
+    /**
+     * The method reads a page of cards and calculates the total according to the count mode
+     * @param cardSpec filter criteria
+     * @param pageable page and sort
+     * @param countMode how the total is calculated
+     * @param approximateTotal source of the total for {@code APPROXIMATE} mode
+     * @return page of cards, {@link Page} with the total for {@code EXACT} and {@code APPROXIMATE} modes
+     * @see CountMode
+     */
+    private Slice<CardResponse> findCards(Specification<Card> cardSpec, Pageable pageable, CountMode countMode,
+                                          LongSupplier approximateTotal) {
+        return switch (countMode) {
+            case EXACT -> cardRepository.findAll(cardSpec, pageable).map(cardMapper::toCardResponse);
+            case SLICE -> sliceRepository.findAll(Card.class, cardSpec, pageable, "user").map(cardMapper::toCardResponse);
+            case APPROXIMATE -> new PageImpl<>(
+                    sliceRepository.findAll(Card.class, cardSpec, pageable, "user").map(cardMapper::toCardResponse).getContent(),
+                    pageable,
+                    approximateTotal.getAsLong()
+            );
+        };
+    }
+
+    private long getCardCount(String email) {
+        return userRepository.findCardCountByEmail(email).orElse(0L);
+    }
+
     /**
      * The method creates a list of {@link Sort.Order} objects based on the list of fields to sort and the sort direction.
      * @param sortList list of fields to sort by
@@ -328,15 +436,12 @@ public class CardServiceImpl implements CardService {
     }
 
     /**
-     * The method checks whether the card is a duplicate
-     * @param user current user
-     * @param cardNumber new card number
-     * @return {@code  true}, if a card with the same number already exists
+     * The method checks whether the constraint violation is caused by a card with the same number (card hash)
+     * @param exception exception thrown on card insert
+     * @return {@code  true}, if the user already has a card with the same number
      */
-    private boolean isCardNumberDuplicate(User user, String cardNumber) {
-        List<String> userCards = cardRepository.findEncryptedNumberByUserId(user.getId());
-        return userCards.stream()
-                .map(aesEncryption::decrypt)
-                .anyMatch(number -> number.equals(cardNumber));
+    private boolean isCardHashConflict(DataIntegrityViolationException exception) {
+        String message = exception.getMostSpecificCause().getMessage();
+        return message != null && message.contains(Card.CARD_HASH_CONSTRAINT);
     }
 }
@@ -0,0 +1,7 @@
+package com.testtask.bankcardmanagement.service.idempotency;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    <T> T execute(String idempotencyKey, String operation, Object request, Class<T> responseType, Supplier<T> action);
+}
@@ -0,0 +1,149 @@
+package com.testtask.bankcardmanagement.service.idempotency.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.testtask.bankcardmanagement.exception.transaction.IdempotencyKeyException;
+import com.testtask.bankcardmanagement.model.IdempotencyKey;
+import com.testtask.bankcardmanagement.model.IdempotencyKeyId;
+import com.testtask.bankcardmanagement.repository.IdempotencyKeyRepository;
+import com.testtask.bankcardmanagement.service.idempotency.IdempotencyService;
+import com.testtask.bankcardmanagement.service.security.SecurityUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Service executing a payment operation at most once for an {@code Idempotency-Key} of the user.
+ * <p>The key is inserted in the transaction of the operation together with its response, so the key exists
+ * only if the operation is committed. A concurrent duplicate waits on the uncommitted key row and then replays
+ * the committed response; if the first request is rolled back (declined), the duplicate executes the operation.</p>
+ * <p>Committed responses are also kept in an in-memory cache, so a retry does not reach the database.
+ * Keys older than {@code my.idempotency.ttl_hours} are purged by {@link com.testtask.bankcardmanagement.job.IdempotencyKeyJob}</p>
+ */
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final Cache<IdempotencyKeyId, StoredResponse> responses;
+
+    public IdempotencyServiceImpl(
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${my.idempotency.ttl_hours:24}") long ttlHours,
+            @Value("${my.idempotency.cache_max_size:10000}") long cacheMaxSize
+    ) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofHours(ttlHours))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "idempotency_responses");
+    }
+
+    /**
+     * The method executes the operation once for the key of the current user
+     * and returns the stored response for the repeated requests
+     * @param idempotencyKey key sent by the client in the {@code Idempotency-Key} header
+     * @param operation name of the operation, a key cannot be used for two operations
+     * @param request request body, a key cannot be used for two different requests
+     * @param responseType type of the response
+     * @param action operation executed in the current transaction
+     * @param <T> type of the response
+     * @return the response of the operation or the stored response of the first request with the key
+     * @throws IdempotencyKeyException If the key is blank, too long or was used for another request
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public <T> T execute(String idempotencyKey, String operation, Object request, Class<T> responseType, Supplier<T> action) {
+        if(idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH)
+            throw new IdempotencyKeyException("Idempotency key must be from 1 to " + MAX_KEY_LENGTH + " characters.");
+
+        IdempotencyKeyId id = new IdempotencyKeyId(SecurityUtil.getCurrentUser().getId(), idempotencyKey);
+        String requestHash = hash(operation, request);
+
+        StoredResponse cached = responses.getIfPresent(id);
+        if(cached != null)
+            return replay(cached, operation, requestHash, responseType);
+
+        int inserted = idempotencyKeyRepository.insertIfAbsent(id.getUserId(), id.getKey(), operation, requestHash, LocalDateTime.now());
+        if(inserted == 0) {
+            IdempotencyKey stored = idempotencyKeyRepository.findById(id)
+                    .orElseThrow(() -> new IdempotencyKeyException("The request with this idempotency key is being processed, try again."));
+            StoredResponse storedResponse = new StoredResponse(stored.getOperation(), stored.getRequestHash(), stored.getResponse());
+            responses.put(id, storedResponse);
+            return replay(storedResponse, operation, requestHash, responseType);
+        }
+
+        T response = action.get();
+        String json = toJson(response);
+        idempotencyKeyRepository.saveResponse(id.getUserId(), id.getKey(), json);
+
+        StoredResponse storedResponse = new StoredResponse(operation, requestHash, json);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                responses.put(id, storedResponse);
+            }
+        });
+
+        return response;
+    }
+
+    private <T> T replay(StoredResponse storedResponse, String operation, String requestHash, Class<T> responseType) {
+        if(!storedResponse.operation().equals(operation) || !storedResponse.requestHash().equals(requestHash))
+            throw new IdempotencyKeyException("Idempotency key was already used for another request.");
+        if(storedResponse.response() == null)
+            throw new IdempotencyKeyException("The request with this idempotency key is being processed, try again.");
+
+        try {
+            return objectMapper.readValue(storedResponse.response(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response cannot be read", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be stored", e);
+        }
+    }
+
+    /**
+     * The method calculates the hash of the request, the card numbers of the request are not stored
+     * @return {@code String} hex SHA-256 of the operation and the JSON of the request
+     */
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Request hash cannot be calculated", e);
+        }
+    }
+
+    private record StoredResponse(String operation, String requestHash, String response) { }
+}
@@ -3,7 +3,9 @@ package com.testtask.bankcardmanagement.service.limit;
 import com.testtask.bankcardmanagement.model.Card;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 public interface LimitService {
     void checkCardLimits(Card card, BigDecimal amount);
+    void registerWriteOff(Card card, BigDecimal amount, LocalDateTime dateTime);
 }
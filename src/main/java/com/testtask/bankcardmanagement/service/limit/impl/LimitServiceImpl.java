@@ -1,43 +1,46 @@
 package com.testtask.bankcardmanagement.service.limit.impl;
 
-import com.testtask.bankcardmanagement.encrypt.AESEncryption;
 import com.testtask.bankcardmanagement.exception.limit.LimitExceededException;
 import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.CardSpendCounter;
+import com.testtask.bankcardmanagement.model.CardSpendCounterId;
 import com.testtask.bankcardmanagement.model.Limit;
-import com.testtask.bankcardmanagement.model.Transaction;
-import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
+import com.testtask.bankcardmanagement.model.dto.limit.LimitSpending;
 import com.testtask.bankcardmanagement.model.enums.LimitType;
-import com.testtask.bankcardmanagement.model.enums.TransactionType;
-import com.testtask.bankcardmanagement.repository.TransactionRepository;
-import com.testtask.bankcardmanagement.service.card.CardService;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import com.testtask.bankcardmanagement.repository.CardSpendCounterRepository;
 import com.testtask.bankcardmanagement.service.limit.LimitService;
-import com.testtask.bankcardmanagement.service.transaction.impl.TransactionSpecification;
 import lombok.RequiredArgsConstructor;
 import org.hibernate.Hibernate;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
- * Service for working with card limits
+ * Service for working with card limits.
+ * The amounts written off for the current day and month are kept in {@link CardSpendCounter},
+ * which are updated in the same transaction as the write-off
  * @see Limit
  * @see LimitType
  * @see Card
+ * @see CardSpendCounter
  */
 @Service
 @RequiredArgsConstructor
 public class LimitServiceImpl implements LimitService {
-    private final TransactionRepository transactionRepository;
+    private final CardSpendCounterRepository cardSpendCounterRepository;
 
     /**
      * The method checks whether the transaction amount exceeds the established limits for the card
      * If the limit type is {@code NO_LIMIT}, the check for this limit is skipped.
-     * For limits of type {@code DAILY} and {@code MONTHLY}, the total amount of transactions
-     * for the corresponding period (day or month) is calculated and compared with the maximum limit amount.
+     * For limits of type {@code DAILY} and {@code MONTHLY}, the amount already written off
+     * for the corresponding period (day or month) is read from the spend counters and compared with the maximum limit amount.
      * @param card object {@link Card}, for which limits are checked
      * @param amount the {@link BigDecimal} amount of the current transaction to be verified
      * @see Limit
@@ -49,87 +52,74 @@ public class LimitServiceImpl implements LimitService {
         Hibernate.initialize(card.getLimits());
         List<Limit> limits = card.getLimits();
 
-        for(Limit limit: limits) {
-            if (limit.getLimitType() == LimitType.NO_LIMIT)
-                continue;
-
-            switch (limit.getLimitType()) {
-                case DAILY -> {
-                    BigDecimal sumForADay = getAllTransactionsByUserCardForADay(card.getId()).stream()
-                            .map(Transaction::getAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    BigDecimal sumAfterDayTransactions = sumForADay.add(amount);
+        boolean hasDailyLimit = hasLimit(limits, LimitType.DAILY);
+        boolean hasMonthlyLimit = hasLimit(limits, LimitType.MONTHLY);
+        if(!hasDailyLimit && !hasMonthlyLimit)
+            return;
 
-                    if(sumAfterDayTransactions.compareTo(limit.getMaxAmount()) > 0) {
-                        throw new LimitExceededException(
-                                String.format("Limit %s exceeded. Max: %s, current operation %s, already spent: %s",
-                                        LimitType.DAILY, limit.getMaxAmount(), amount, sumForADay)
-                        );
-                    }
-                }
+        LimitSpending spending = getSpending(card.getId(), hasDailyLimit, hasMonthlyLimit);
 
-                case MONTHLY -> {
-                    BigDecimal sumForAMonth = getAllTransactionsByUserCardForAMonth(card.getId()).stream()
-                            .map(Transaction::getAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    BigDecimal sumAfterTransactionMonthTransactions = sumForAMonth.add(amount);
-
-                    if(sumAfterTransactionMonthTransactions.compareTo(limit.getMaxAmount()) > 0) {
-                        throw new LimitExceededException(
-                                String.format("Limit %s exceeded. Max: %s, current operation %s, already spent: %s",
-                                        LimitType.MONTHLY, limit.getMaxAmount(), amount, sumForAMonth)
-                        );
-                    }
-                }
+        for(Limit limit: limits) {
+            switch (limit.getLimitType()) {
+                case DAILY -> checkLimit(limit, amount, spending.spentForDay());
+                case MONTHLY -> checkLimit(limit, amount, spending.spentForMonth());
+                case NO_LIMIT -> { }
             }
         }
     }
 
     /**
-     * Method to get all transactions of the specified card for the current user for the period: day.
-     * With verification of the card's ownership by the user
-     * @param cardId card id for which transactions need to be received
-     * @return {@link List<Transaction>} list of transactions
-     * @see TransactionParamFilter
-     * @see TransactionSpecification
+     * The method adds the write-off amount to the day and month spend counters of the card.
+     * Must be called in the transaction that saves the write-off
+     * @param card the card from which the funds are written off
+     * @param amount the amount of the write-off
+     * @param dateTime the write-off time, determines the counter periods
      */
-    private List<Transaction> getAllTransactionsByUserCardForADay(Long cardId) {
-        LocalDateTime startThisDay = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS);
-        LocalDateTime startNextDay = startThisDay.plusDays(1);
-        TransactionParamFilter filter = new TransactionParamFilter(
-                cardId,
-                TransactionType.WRITE_OFF,
-                startThisDay,
-                startNextDay,
-                true
-        );
+    @Override
+    public void registerWriteOff(Card card, BigDecimal amount, LocalDateTime dateTime) {
+        LocalDate day = dateTime.toLocalDate();
+        cardSpendCounterRepository.addAmount(card.getId(), SpendPeriodType.DAY.name(), day, amount);
+        cardSpendCounterRepository.addAmount(card.getId(), SpendPeriodType.MONTH.name(), day.withDayOfMonth(1), amount);
+    }
+
+    /**
+     * The method reads the amounts written off from the card for the current day and month by primary key
+     * @param cardId card id for which the amounts are read
+     * @param daily whether the day amount is needed
+     * @param monthly whether the month amount is needed
+     * @return {@link LimitSpending} amounts for the day and the month (zero if there is no counter)
+     */
+    private LimitSpending getSpending(Long cardId, boolean daily, boolean monthly) {
+        LocalDate today = LocalDate.now();
+        List<CardSpendCounterId> ids = new ArrayList<>(2);
+        if(daily)
+            ids.add(new CardSpendCounterId(cardId, SpendPeriodType.DAY, today));
+        if(monthly)
+            ids.add(new CardSpendCounterId(cardId, SpendPeriodType.MONTH, today.withDayOfMonth(1)));
+
+        Map<SpendPeriodType, BigDecimal> amounts = cardSpendCounterRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(counter -> counter.getId().getPeriodType(), CardSpendCounter::getAmount));
 
-        Specification<Transaction> spec = TransactionSpecification.build(filter);
-        return transactionRepository.findAll(spec);
+        return new LimitSpending(amounts.get(SpendPeriodType.DAY), amounts.get(SpendPeriodType.MONTH));
     }
 
     /**
-     * Method to get all transactions of the specified card for the current user for the period: month.
-     * With verification of the card's ownership by the user
-     * @param cardId card id for which transactions need to be received
-     * @return {@link List<Transaction>} list of transactions
-     * @see TransactionParamFilter
-     * @see TransactionSpecification
+     * The method compares the amount after the operation with the maximum amount of the limit
+     * @param limit checked limit
+     * @param amount amount of the current operation
+     * @param spent amount already written off for the limit period
+     * @throws LimitExceededException If the limit is exceeded
      */
-    private List<Transaction> getAllTransactionsByUserCardForAMonth(Long cardId) {
-        LocalDateTime startThisMonth = LocalDateTime.now().withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-        LocalDateTime startNextMonth = startThisMonth.plusMonths(1);
-        TransactionParamFilter filter = new TransactionParamFilter(
-                cardId,
-                TransactionType.WRITE_OFF,
-                startThisMonth,
-                startNextMonth,
-                true
-        );
+    private void checkLimit(Limit limit, BigDecimal amount, BigDecimal spent) {
+        if(spent.add(amount).compareTo(limit.getMaxAmount()) > 0) {
+            throw new LimitExceededException(
+                    String.format("Limit %s exceeded. Max: %s, current operation %s, already spent: %s",
+                            limit.getLimitType(), limit.getMaxAmount(), amount, spent)
+            );
+        }
+    }
 
-        Specification<Transaction> spec = TransactionSpecification.build(filter);
-        return transactionRepository.findAll(spec);
+    private boolean hasLimit(List<Limit> limits, LimitType limitType) {
+        return limits.stream().anyMatch(limit -> limit.getLimitType() == limitType);
     }
 }
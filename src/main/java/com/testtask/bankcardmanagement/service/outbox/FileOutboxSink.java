@@ -0,0 +1,61 @@
+package com.testtask.bankcardmanagement.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.testtask.bankcardmanagement.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sink appending the events to a file as NDJSON, one event per line, for local testing of the consumers.
+ * An event published again after a failure of the relay is appended again
+ */
+@Component
+@ConditionalOnProperty(name = "my.outbox.sink", havingValue = "file")
+public class FileOutboxSink implements OutboxSink {
+    private final ObjectMapper objectMapper;
+    private final Path path;
+
+    public FileOutboxSink(ObjectMapper objectMapper, @Value("${my.outbox.file_path:outbox-events.ndjson}") String path) {
+        this.objectMapper = objectMapper;
+        this.path = Path.of(path);
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        List<String> lines = new ArrayList<>(events.size());
+        for(OutboxEvent event : events)
+            lines.add(toLine(event));
+
+        try {
+            Files.write(path, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Outbox events cannot be written to " + path, e);
+        }
+    }
+
+    private String toLine(OutboxEvent event) {
+        try {
+            ObjectNode line = objectMapper.createObjectNode()
+                    .put("id", event.getId())
+                    .put("type", event.getEventType())
+                    .put("cardId", event.getCardId())
+                    .put("createdAt", event.getCreatedAt().toString());
+            line.set("payload", objectMapper.readTree(event.getPayload()));
+            return objectMapper.writeValueAsString(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox event " + event.getId() + " cannot be written", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.testtask.bankcardmanagement.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.testtask.bankcardmanagement.model.OutboxEvent;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Sink publishing the events as {@link TransactionPostedEvent} to the listeners of the application.
+ * The listeners are called synchronously in the relay thread, an exception of a listener makes the relay
+ * publish the events again on the next run
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "my.outbox.sink", havingValue = "in_process", matchIfMissing = true)
+public class InProcessOutboxSink implements OutboxSink {
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for(OutboxEvent event : events)
+            eventPublisher.publishEvent(new TransactionPostedEvent(event.getId(), readPayload(event)));
+    }
+
+    private TransactionEvent readPayload(OutboxEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(), TransactionEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox event " + event.getId() + " cannot be read", e);
+        }
+    }
+}
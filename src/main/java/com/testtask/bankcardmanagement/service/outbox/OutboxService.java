@@ -0,0 +1,9 @@
+package com.testtask.bankcardmanagement.service.outbox;
+
+import com.testtask.bankcardmanagement.model.Transaction;
+
+import java.util.Collection;
+
+public interface OutboxService {
+    void appendPostedTransactions(Collection<Transaction> transactions);
+}
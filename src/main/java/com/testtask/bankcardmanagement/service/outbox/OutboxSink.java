@@ -0,0 +1,18 @@
+package com.testtask.bankcardmanagement.service.outbox;
+
+import com.testtask.bankcardmanagement.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the outbox events. The relay marks the events published only after {@link #publish} returns,
+ * an exception leaves them for the next run, so a sink gets every event at least once and in id order.
+ * A sink is selected by {@code my.outbox.sink}, another destination is added as a bean implementing this interface
+ */
+public interface OutboxSink {
+    /**
+     * The method delivers the events
+     * @param events events in id order
+     */
+    void publish(List<OutboxEvent> events);
+}
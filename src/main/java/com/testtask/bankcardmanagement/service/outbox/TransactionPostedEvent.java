@@ -0,0 +1,13 @@
+package com.testtask.bankcardmanagement.service.outbox;
+
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionEvent;
+
+/**
+ * Application event of {@link InProcessOutboxSink}, received by {@code @EventListener} methods
+ * @param eventId id of the outbox event, increases in the order of the transactions of a card
+ * @param transaction posted transaction
+ */
+public record TransactionPostedEvent(
+        Long eventId,
+        TransactionEvent transaction
+) { }
@@ -0,0 +1,78 @@
+package com.testtask.bankcardmanagement.service.outbox.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.testtask.bankcardmanagement.model.OutboxEvent;
+import com.testtask.bankcardmanagement.model.Transaction;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionEvent;
+import com.testtask.bankcardmanagement.service.outbox.OutboxService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Service writing the outbox events of the posted transactions in the transaction of the payment,
+ * so an event exists only if the payment is committed and every committed payment has its events
+ * @see OutboxEvent
+ * @see com.testtask.bankcardmanagement.job.OutboxRelayJob
+ */
+@RequiredArgsConstructor
+@Service
+public class OutboxServiceImpl implements OutboxService {
+    public static final String TRANSACTION_POSTED = "TRANSACTION_POSTED";
+
+    private static final String INSERT_EVENT =
+            "INSERT INTO outbox_events (card_id, event_type, payload, created_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The method writes a {@code TRANSACTION_POSTED} event for every transaction by one JDBC batch.
+     * The events are inserted by {@link JdbcTemplate} on the connection of the current transaction:
+     * the ids are generated by {@code AUTO_INCREMENT} to keep the insert order, and Hibernate does not batch
+     * the inserts of entities with database generated ids
+     * @param transactions saved transactions of the payment, with ids
+     * @see TransactionEvent
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendPostedTransactions(Collection<Transaction> transactions) {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = transactions.stream()
+                .map(transaction -> new Object[] {
+                        transaction.getCard().getId(),
+                        TRANSACTION_POSTED,
+                        toJson(transaction),
+                        createdAt
+                })
+                .toList();
+
+        jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+    }
+
+    private String toJson(Transaction transaction) {
+        TransactionEvent event = new TransactionEvent(
+                transaction.getId(),
+                transaction.getCard().getId(),
+                transaction.getType(),
+                transaction.getAmount(),
+                transaction.getTargetMaskedCard(),
+                transaction.getTransactionDate(),
+                transaction.getDescription()
+        );
+
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox event cannot be written", e);
+        }
+    }
+}
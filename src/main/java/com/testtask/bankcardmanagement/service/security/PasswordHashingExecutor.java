@@ -0,0 +1,68 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.testtask.bankcardmanagement.exception.security.AuthenticationOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for the BCrypt work of login and registration, so a burst of logins does not occupy
+ * the request threads needed by the other endpoints.
+ * <p>At most {@code threads} passwords are hashed at the same time and at most {@code queue_capacity} requests wait,
+ * further requests are rejected at once with {@link AuthenticationOverloadedException} (load shedding)
+ * instead of waiting in the request thread pool.</p>
+ * <p>Metrics: {@code executor.*} with the tag {@code name=password_hashing} (active threads, queued tasks),
+ * {@code auth.hashing.rejected} - rejected requests</p>
+ * <p>The executor is not a Spring bean, so it does not replace the auto-configured application task executor.
+ * Its threads stay platform threads in the virtual thread mode: hashing is CPU work and the pool size is the limit</p>
+ */
+@Service
+public class PasswordHashingExecutor {
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    public PasswordHashingExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${my.security.password_hashing.threads:0}") int threads,
+            @Value("${my.security.password_hashing.queue_capacity:100}") int queueCapacity
+    ) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.rejected = meterRegistry.counter("auth.hashing.rejected");
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password_hashing");
+    }
+
+    /**
+     * The method runs the task in the hashing thread pool
+     * @param task authentication or registration
+     * @param <T> type of the result
+     * @return {@link CompletableFuture} completed with the result of the task
+     * @throws AuthenticationOverloadedException If all threads are busy and the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AuthenticationOverloadedException("Too many authentication requests, try again later.", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,85 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.testtask.bankcardmanagement.exception.user.UserNotFoundException;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the authenticated users by email, so an authenticated request does not load the user from the database.
+ * <p>The cached user is a copy without the cards relation and the card count, it is shared by concurrent requests
+ * and must not be changed. Entries are evicted by {@link PrincipalCacheEvictionListener} when the user is updated or deleted,
+ * on the other application instances they expire after the ttl.</p>
+ * <p>Metrics: {@code cache.gets} tagged by {@code result=hit|miss}, {@code cache.evictions}, {@code cache.size}
+ * with the tag {@code cache=principals}</p>
+ */
+@Service
+public class PrincipalCache {
+    private static final String CACHE_NAME = "principals";
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> cache;
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PrincipalCache(
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${my.security.principal_cache.max_size:10000}") long maxSize,
+            @Value("${my.security.principal_cache.ttl_seconds:60}") long ttlSeconds
+    ) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * The method returns the user with the specified email from the cache or loads it from the database.
+     * A missing user is not cached.
+     * <p>The user is loaded outside the cache: {@code Cache.get(key, loader)} runs the loader under the lock
+     * of the hash map bin, which pins a virtual thread for the whole database query.
+     * Concurrent misses of one user may load it more than once. A user loaded while an eviction happened
+     * is returned but not cached, it could be read before the evicted change was committed</p>
+     * @param email user email from the token
+     * @return {@link User} without the cards relation
+     * @throws UserNotFoundException If the user with the specified email does not exist
+     */
+    public User getUser(String email) {
+        User user = cache.getIfPresent(email);
+        if(user != null)
+            return user;
+
+        long evictionsBefore = evictions.get();
+        user = loadUser(email);
+        if(evictions.get() == evictionsBefore)
+            cache.put(email, user);
+        return user;
+    }
+
+    /**
+     * The method removes the user from the cache, the next request of the user loads it from the database
+     * @param email user email
+     */
+    public void evict(String email) {
+        evictions.incrementAndGet();
+        cache.invalidate(email);
+    }
+
+    private User loadUser(String email) {
+        User user = userRepository.findUserByEmail(email)
+                .orElseThrow(() -> new UserNotFoundException("User not found"));
+
+        return new User(user.getId(), user.getEmail(), user.getPassword(), user.getRole(), null, null);
+    }
+}
@@ -0,0 +1,38 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.testtask.bankcardmanagement.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener of {@link User} evicting the changed or deleted user from {@link PrincipalCache}.
+ * <p>The user is evicted at once and again after the transaction completes, because a concurrent request
+ * can put the old state back into the cache before the change is committed.
+ * Bulk JPQL updates do not call the listener, they change only the card count, which is not cached.</p>
+ * <p>The listener is created by Hibernate while the entity manager factory is built,
+ * so the cache (which depends on the repository) is resolved on first use</p>
+ */
+@RequiredArgsConstructor
+public class PrincipalCacheEvictionListener {
+    private final ObjectProvider<PrincipalCache> principalCache;
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        String email = user.getEmail();
+        principalCache.getObject().evict(email);
+
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    principalCache.getObject().evict(email);
+                }
+            });
+        }
+    }
+}
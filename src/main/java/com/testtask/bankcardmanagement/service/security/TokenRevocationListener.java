@@ -0,0 +1,37 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.testtask.bankcardmanagement.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener of {@link User} revoking the tokens of the changed or deleted user in the claims authentication mode,
+ * where the role is taken from the token.
+ * <p>The revocation is written after the commit: the entity manager cannot be used while the change is flushed,
+ * and a rolled back change must not revoke the tokens</p>
+ */
+@RequiredArgsConstructor
+public class TokenRevocationListener {
+    private final ObjectProvider<TokenRevocationService> tokenRevocationService;
+
+    @PostUpdate
+    @PostRemove
+    public void revoke(User user) {
+        Long userId = user.getId();
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            tokenRevocationService.getObject().revokeUser(userId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                tokenRevocationService.getObject().revokeUser(userId);
+            }
+        });
+    }
+}
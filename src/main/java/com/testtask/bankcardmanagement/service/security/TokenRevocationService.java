@@ -0,0 +1,123 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.testtask.bankcardmanagement.model.TokenRevocation;
+import com.testtask.bankcardmanagement.model.enums.AuthenticationMode;
+import com.testtask.bankcardmanagement.repository.TokenRevocationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Revocation list of the claims authentication mode, in which the principal is built from the token
+ * and the database is not read on each request.
+ * <p>Revocations are stored in {@code token_revocations} and kept in memory, the set is refreshed
+ * from the database every {@code my.security.revocation.refresh_ms}, so a revocation made on another instance
+ * takes effect after at most this delay. Revocations older than the token lifetime are removed,
+ * the tokens they revoke are already expired.</p>
+ * <p>In the database mode the revocation list is not used, the changed user is evicted from {@link PrincipalCache}</p>
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AuthenticationMode authenticationMode;
+    private final Duration tokenLifetime;
+
+    /**
+     * Revocation time by user id. The map is not changed after publication, a change replaces it under the lock
+     */
+    private volatile Map<Long, Instant> revocations = Map.of();
+
+    public TokenRevocationService(
+            TokenRevocationRepository tokenRevocationRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${my.security.authentication_mode:DATABASE}") AuthenticationMode authenticationMode,
+            @Value("${my.security.claims_token_ttl_minutes:15}") long tokenTtlMinutes
+    ) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        // Revocations are written after the commit of the user change, so they need their own transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.authenticationMode = authenticationMode;
+        this.tokenLifetime = Duration.ofMinutes(tokenTtlMinutes);
+    }
+
+    /**
+     * The method revokes all tokens of the user issued up to now
+     * @param userId id of the user
+     */
+    public void revokeUser(Long userId) {
+        if(authenticationMode != AuthenticationMode.CLAIMS || userId == null)
+            return;
+
+        Instant revokedAt = Instant.now();
+        transactionTemplate.executeWithoutResult(status -> tokenRevocationRepository.revoke(userId, revokedAt));
+
+        synchronized (this) {
+            Map<Long, Instant> updated = new HashMap<>(revocations);
+            updated.merge(userId, revokedAt, this::latest);
+            revocations = updated;
+        }
+    }
+
+    /**
+     * The method checks whether the token of the user is revoked.
+     * The issue time of a token has second precision, so a token issued in the second of the revocation is also rejected
+     * @param userId id of the user from the token
+     * @param issuedAt issue time of the token
+     * @return {@code true}, if the token was issued before the last revocation of the user
+     */
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        Instant revokedAt = revocations.get(userId);
+        if(revokedAt == null)
+            return false;
+
+        return issuedAt == null || !issuedAt.toInstant().isAfter(revokedAt);
+    }
+
+    @Scheduled(fixedDelayString = "${my.security.revocation.refresh_ms:30000}")
+    public void onSchedule() {
+        if(authenticationMode == AuthenticationMode.CLAIMS)
+            refresh();
+    }
+
+    /**
+     * The method removes the revocations of expired tokens and reloads the revocation set from the database.
+     * Local revocations newer than the loaded ones are kept, they could be made while the set was loading
+     */
+    public void refresh() {
+        Instant expiredBefore = Instant.now().minus(tokenLifetime);
+        Map<Long, Instant> loaded = transactionTemplate.execute(status -> {
+            tokenRevocationRepository.deleteAllByRevokedAtBefore(expiredBefore);
+
+            Map<Long, Instant> result = new HashMap<>();
+            for(TokenRevocation revocation: tokenRevocationRepository.findAllByRevokedAtAfter(expiredBefore))
+                result.put(revocation.getUserId(), revocation.getRevokedAt());
+            return result;
+        });
+
+        synchronized (this) {
+            revocations.forEach((userId, revokedAt) -> {
+                if(revokedAt.isAfter(expiredBefore))
+                    loaded.merge(userId, revokedAt, this::latest);
+            });
+            revocations = loaded;
+        }
+        log.debug("Token revocations refreshed, revoked users: {}", loaded.size());
+    }
+
+    private Instant latest(Instant first, Instant second) {
+        return first.isAfter(second) ? first : second;
+    }
+}
@@ -1,10 +1,20 @@
 package com.testtask.bankcardmanagement.service.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.testtask.bankcardmanagement.exception.security.JwtTokenException;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.AuthenticationMode;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,9 +22,14 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -23,49 +38,76 @@ import java.util.function.Function;
 @Service
 @RequiredArgsConstructor
 public class JwtService {
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
+
+    private final MeterRegistry meterRegistry;
+
     @Value("${my.expired_in_days}")
     private long expired_in_days;
 
     @Value("${my.encryption_key}")
     private String valueForInject;
 
+    @Value("${my.security.authentication_mode:DATABASE}")
+    private AuthenticationMode authenticationMode = AuthenticationMode.DATABASE;
+
+    @Value("${my.security.claims_token_ttl_minutes:15}")
+    private long claimsTokenTtlMinutes;
+
+    @Value("${my.security.token_cache.max_size:10000}")
+    private long tokenCacheMaxSize;
+
     /**
-     * Статический ключ, используемый для подписи и верификации JWT
+     * Ключ для подписи и верификации JWT, создается один раз при старте
      */
-    private static String KEY;
+    private SecretKey signInKey;
 
-    @PostConstruct
-    public void init() {
-        JwtService.KEY = valueForInject;
-    }
+    /**
+     * Парсер JWT, потокобезопасен и переиспользуется всеми запросами
+     */
+    private JwtParser jwtParser;
 
     /**
-     * Метод Проверяет валидность JWT токена
-     * @param token JWT токен для проверки
-     * @param userDetails данные пользователя, для которого проверяется токен
-     * @return {@code true}, если токен валиден, иначе {@code false}
+     * Утверждения уже проверенных токенов по SHA-256 хешу токена.
+     * Запись удаляется из кэша в момент истечения срока действия токена
      */
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String userEmail = extractUserEmail(token);
-        return userEmail.equals(userDetails.getUsername()) && !isTokenExpired(token);
+    private Cache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(valueForInject));
+        jwtParser = Jwts.parser()
+                .verifyWith(signInKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(tokenCacheMaxSize)
+                .expireAfter(new ExpiresWithToken())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verified_tokens");
     }
 
     /**
-     * Метод проверяет, истек ли срок действия токена
+     * Метод проверяет подпись и срок действия JWT токена и возвращает его утверждения (claims).
+     * Токен разбирается и проверяется один раз, повторные запросы с тем же токеном получают утверждения из кэша
      * @param token JWT токен для проверки
-     * @return {@code true}, если токен истек, иначе {@code false}
+     * @return {@link Claims} объект, содержащий все утверждения из токена
+     * @throws io.jsonwebtoken.JwtException Если токен поврежден, подпись неверна или срок действия истек
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public Claims validateToken(String token) {
+        return verifiedTokens.get(hash(token), key -> extractAllClaims(token));
     }
 
     /**
-     * Метод извлекает дату истечения срока действия из токена
-     * @param token JWT токен
-     * @return {@link Date} объект, представляющий дату истечения токена
+     * Метод Проверяет валидность JWT токена
+     * @param token JWT токен для проверки
+     * @param userDetails данные пользователя, для которого проверяется токен
+     * @return {@code true}, если токен валиден, иначе {@code false}
      */
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public boolean isTokenValid(String token, UserDetails userDetails) {
+        final Claims claims = validateToken(token);
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date());
     }
 
     /**
@@ -84,15 +126,48 @@ public class JwtService {
      * @return {@code String} сгенерированный JWT токен в виде строки
      */
     public String generateToken(Map<String, Objects> extraClaims, UserDetails userDetails) {
+        Map<String, Object> claims = new HashMap<>(extraClaims);
+        if(userDetails instanceof User user) {
+            claims.put(USER_ID_CLAIM, user.getId());
+            claims.put(ROLE_CLAIM, user.getRole().name());
+        }
+
         return Jwts.builder()
-                .claims(extraClaims)
+                .claims(claims)
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(Date.from(LocalDate.now().plusDays(expired_in_days).atStartOfDay(ZoneId.systemDefault()).toInstant()))
-                .signWith(SignatureAlgorithm.HS256, getSignInKey())
+                .expiration(expirationDate())
+                .signWith(SignatureAlgorithm.HS256, signInKey)
                 .compact();
     }
 
+    /**
+     * Метод создает пользователя из утверждений (claims) проверенного токена без обращения к базе данных
+     * @param claims утверждения токена, полученные из {@link #validateToken(String)}
+     * @return {@link User} с id, email и ролью из токена, без пароля и карт
+     * @throws JwtTokenException Если токен не содержит id пользователя или роль
+     */
+    public User extractPrincipal(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if(userId == null || role == null)
+            throw new JwtTokenException("Token does not contain user claims.");
+
+        return new User(userId, claims.getSubject(), null, UserRole.valueOf(role), null, null);
+    }
+
+    /**
+     * Метод вычисляет дату истечения срока действия нового токена.
+     * В режиме аутентификации по утверждениям токен живет несколько минут, так как роль в нем не обновляется
+     * @return {@link Date} дата истечения токена
+     */
+    private Date expirationDate() {
+        if(authenticationMode == AuthenticationMode.CLAIMS)
+            return new Date(System.currentTimeMillis() + Duration.ofMinutes(claimsTokenTtlMinutes).toMillis());
+
+        return Date.from(LocalDate.now().plusDays(expired_in_days).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
     /**
      * Метод извлекает email пользователя из JWT токена
      * @param token JWT токен
@@ -110,7 +185,7 @@ public class JwtService {
      * @return Значение утверждения указанного типа
      */
     public <T> T extractClaim(String token, Function<Claims, T> claimResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = validateToken(token);
         return claimResolver.apply(claims);
     }
 
@@ -120,21 +195,47 @@ public class JwtService {
      * @return {@link Claims} объект, содержащий все утверждения из токена
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
+        return jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
+    }
 
+    /**
+     * Метод вычисляет ключ кэша проверенных токенов, сам токен в кэше не хранится
+     * @param token JWT токен
+     * @return {@code String} SHA-256 хеш токена в Base64
+     */
+    private String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
     }
 
     /**
-     * Метод генерирует или получает ключ подписи, используемый для подписи и верификации JWT
-     * @return {@link SecretKey} для HMAC SHA алгоритмов.
+     * Время жизни записи кэша равно оставшемуся сроку действия токена
      */
-    private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static class ExpiresWithToken implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            if(claims.getExpiration() == null)
+                return 0;
+
+            long remainingMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
 }
@@ -0,0 +1,19 @@
+package com.testtask.bankcardmanagement.service.transaction;
+
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Write-off waiting in the queue of its card for the next group commit
+ * @param request write-off request, the ownership of the card is already checked
+ * @param result completed with the response after the commit of the group or with the rejection of the write-off
+ * @param enqueuedAt {@link System#nanoTime()} when the write-off was queued
+ * @see WriteOffSequencer
+ */
+public record PendingWriteOff(
+        TransactionWriteOffRequest request,
+        CompletableFuture<TransactionResponse> result,
+        long enqueuedAt
+) { }
@@ -0,0 +1,10 @@
+package com.testtask.bankcardmanagement.service.transaction;
+
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
+import com.testtask.bankcardmanagement.model.enums.ExportFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public interface TransactionExportService {
+    StreamingResponseBody exportByUserCard(Long cardId, TransactionParamFilter transactionParamFilter, ExportFormat format);
+    StreamingResponseBody exportByCard(Long cardId, TransactionParamFilter transactionParamFilter, ExportFormat format);
+}
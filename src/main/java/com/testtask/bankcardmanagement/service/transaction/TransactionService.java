@@ -1,20 +1,37 @@
 package com.testtask.bankcardmanagement.service.transaction;
 
+import com.testtask.bankcardmanagement.model.dto.page.CursorPage;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferRequest;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionTransferRequest;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
-import org.springframework.data.domain.Page;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
 public interface TransactionService {
-    TransactionResponse transfer(TransactionTransferRequest transactionTransferRequest);
-    TransactionResponse writeOff(TransactionWriteOffRequest transactionWriteOffRequest);
-    Page<TransactionResponse> getTransactionsByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
-                                                        int page, int size,
-                                                        List<String> sortList, String sortOrder);
-    Page<TransactionResponse> getTransactionsByCard(Long cardId, TransactionParamFilter transactionParamFilter,
-                                                        int page, int size,
-                                                        List<String> sortList, String sortOrder);
+    TransactionResponse transfer(TransactionTransferRequest transactionTransferRequest, String idempotencyKey);
+    TransactionBatchTransferResponse transferBatch(TransactionBatchTransferRequest transactionBatchTransferRequest, String idempotencyKey);
+    TransactionResponse writeOff(TransactionWriteOffRequest transactionWriteOffRequest, String idempotencyKey);
+    void writeOffGroup(Long cardId, List<PendingWriteOff> writeOffs);
+    Slice<TransactionResponse> getTransactionsByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                         int page, int size,
+                                                         List<String> sortList, String sortOrder, CountMode countMode);
+    Slice<TransactionResponse> getTransactionsByCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                     int page, int size,
+                                                     List<String> sortList, String sortOrder, CountMode countMode);
+    TransactionHistoryResponse getTransactionHistoryByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                               int page, int size,
+                                                               List<String> sortList, String sortOrder, CountMode countMode);
+    TransactionHistoryResponse getTransactionHistoryByCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                           int page, int size,
+                                                           List<String> sortList, String sortOrder, CountMode countMode);
+    CursorPage<TransactionResponse> scrollTransactionsByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                                 String cursor, int size, String sortOrder);
+    CursorPage<TransactionResponse> scrollTransactionsByCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                             String cursor, int size, String sortOrder);
 }
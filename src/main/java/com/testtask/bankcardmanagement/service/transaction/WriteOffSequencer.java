@@ -0,0 +1,176 @@
+package com.testtask.bankcardmanagement.service.transaction;
+
+import com.testtask.bankcardmanagement.exception.transaction.TransactionDeclinedException;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.service.card.CardService;
+import com.testtask.bankcardmanagement.service.security.SecurityUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Optional group commit of the write-offs: concurrent write-offs from the same card are queued per card
+ * and applied in micro-batches by {@link TransactionService#writeOffGroup}, one transaction with one balance
+ * {@code UPDATE} and a JDBC batch of transaction inserts, instead of one transaction per write-off
+ * waiting for the lock of the same card row.
+ * <p>The first write-off of an idle card waits {@code linger_ms} for the others, a group contains at most
+ * {@code max_batch_size} write-offs, the rest are applied by the next group right after the commit.
+ * At most one group of a card is executed at a time. Each caller gets its own response or rejection
+ * (limits, balance), only a failure of the whole group (card not valid, database error) fails every write-off of it.</p>
+ * <p>Disabled by default ({@code my.payment.group_commit.enabled}), then the write-off is executed in the request thread.
+ * A write-off with an {@code Idempotency-Key} is always executed in the request thread, see {@link #isGroupCommit}.</p>
+ * <p>On shutdown the group being executed is finished, the write-offs still queued are failed
+ * with {@link RejectedExecutionException} and never applied.</p>
+ * <p>Metrics: {@code payment.write_off.group_commit.latency} - time from queueing to the end of the group
+ * with the 0.5, 0.95 and 0.99 percentiles, {@code payment.write_off.group_commit.batch_size},
+ * {@code executor.*} with the tag {@code name=write_off_group_commit}</p>
+ */
+@Service
+public class WriteOffSequencer {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final TransactionService transactionService;
+    private final CardService cardService;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Timer latency;
+    private final DistributionSummary batchSize;
+
+    // Queued write-offs by card id, the card is in the map while a group of it is scheduled or executed
+    private final Map<Long, ArrayDeque<PendingWriteOff>> queues = new ConcurrentHashMap<>();
+
+    public WriteOffSequencer(
+            TransactionService transactionService,
+            CardService cardService,
+            MeterRegistry meterRegistry,
+            @Value("${my.payment.group_commit.enabled:false}") boolean enabled,
+            @Value("${my.payment.group_commit.max_batch_size:50}") int maxBatchSize,
+            @Value("${my.payment.group_commit.linger_ms:2}") long lingerMs,
+            @Value("${my.payment.group_commit.threads:4}") int threads
+    ) {
+        this.transactionService = transactionService;
+        this.cardService = cardService;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerMs = Math.max(0, lingerMs);
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), new CustomizableThreadFactory("write-off-group-commit-"));
+        this.latency = Timer.builder("payment.write_off.group_commit.latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("payment.write_off.group_commit.batch_size")
+                .register(meterRegistry);
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "write_off_group_commit");
+    }
+
+    /**
+     * The method checks whether the write-off is applied in a group of its card or in the request thread
+     * @param idempotencyKey key of the request, {@code null} if the client does not send it
+     * @return {@code true} if the group commit is enabled and the request has no idempotency key
+     */
+    public boolean isGroupCommit(String idempotencyKey) {
+        return enabled && idempotencyKey == null;
+    }
+
+    /**
+     * The method queues the write-off from the card of the current user, it is applied in the next group of its card.
+     * The card and its ownership are checked in the request thread, before the write-off is queued
+     * @param transactionWriteOffRequest request object containing the write-off details
+     * @return {@link CompletableFuture} completed with the response after the commit of the group
+     * @see TransactionService#writeOffGroup
+     * @throws TransactionDeclinedException If the card does not belong to the user
+     * @throws RejectedExecutionException If the application is shutting down
+     */
+    public CompletableFuture<TransactionResponse> writeOff(TransactionWriteOffRequest transactionWriteOffRequest) {
+        User user = SecurityUtil.getCurrentUser();
+        Long cardId = cardService.findCardIdByNumber(transactionWriteOffRequest.fromCardNumber(), user);
+        if(!cardService.validateCardOwnership(cardId))
+            throw new TransactionDeclinedException("Card does not belong to the user.");
+
+        PendingWriteOff writeOff = new PendingWriteOff(transactionWriteOffRequest, new CompletableFuture<>(), System.nanoTime());
+        queues.compute(cardId, (id, pending) -> {
+            if(pending == null) {
+                pending = new ArrayDeque<>();
+                executor.schedule(() -> drain(id), lingerMs, TimeUnit.MILLISECONDS);
+            }
+            pending.add(writeOff);
+            return pending;
+        });
+
+        return writeOff.result();
+    }
+
+    /**
+     * The method executes the next group of the card and schedules the following one if write-offs are left in the queue
+     * @param cardId id of the card
+     */
+    private void drain(Long cardId) {
+        List<PendingWriteOff> group = new ArrayList<>(maxBatchSize);
+        queues.computeIfPresent(cardId, (id, pending) -> {
+            while(group.size() < maxBatchSize && !pending.isEmpty())
+                group.add(pending.poll());
+            return pending;
+        });
+
+        try {
+            execute(cardId, group);
+        } finally {
+            queues.computeIfPresent(cardId, (id, pending) -> {
+                if(pending.isEmpty())
+                    return null;
+
+                // Rejected after the shutdown, the queue is left for shutdown() to fail
+                executor.execute(() -> drain(id));
+                return pending;
+            });
+        }
+    }
+
+    private void execute(Long cardId, List<PendingWriteOff> group) {
+        if(group.isEmpty())
+            return;
+
+        batchSize.record(group.size());
+        try {
+            transactionService.writeOffGroup(cardId, group);
+        } catch (RuntimeException e) {
+            // The group is rolled back, the write-offs not completed after the commit fail with its cause
+            group.forEach(writeOff -> writeOff.result().completeExceptionally(e));
+        } finally {
+            long now = System.nanoTime();
+            group.forEach(writeOff -> latency.record(now - writeOff.enqueuedAt(), TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The delayed groups are not started any more, the group being executed is finished
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        RejectedExecutionException cause = new RejectedExecutionException("Write-off is not applied, the application is shutting down.");
+        queues.keySet().forEach(cardId -> queues.computeIfPresent(cardId, (id, pending) -> {
+            pending.forEach(writeOff -> writeOff.result().completeExceptionally(cause));
+            return null;
+        }));
+    }
+}
@@ -0,0 +1,50 @@
+package com.testtask.bankcardmanagement.service.transaction.impl;
+
+import com.testtask.bankcardmanagement.exception.other.InvalidCursorException;
+import com.testtask.bankcardmanagement.model.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the transaction list sorted by (transaction date, id) - the keys of the last transaction of the page.
+ * The client receives it as an opaque Base64 string and does not depend on its format
+ * @param transactionDate date of the last transaction of the page
+ * @param id id of the last transaction of the page, makes the position unique for transactions with the same date
+ */
+record TransactionCursor(LocalDateTime transactionDate, Long id) {
+    private static final String SEPARATOR = "_";
+
+    static TransactionCursor of(Transaction transaction) {
+        return new TransactionCursor(transaction.getTransactionDate(), transaction.getId());
+    }
+
+    String encode() {
+        String value = transactionDate + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The method restores the position from the cursor received from the client
+     * @param cursor cursor returned in the previous page
+     * @return {@link TransactionCursor}
+     * @throws InvalidCursorException If the cursor was not created by {@link #encode()}
+     */
+    static TransactionCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(SEPARATOR);
+            if(separator < 0)
+                throw new InvalidCursorException("Invalid cursor.");
+
+            return new TransactionCursor(
+                    LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor.");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.testtask.bankcardmanagement.service.transaction.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.testtask.bankcardmanagement.exception.card.CardNotFoundException;
+import com.testtask.bankcardmanagement.exception.transaction.TransactionDeclinedException;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
+import com.testtask.bankcardmanagement.model.enums.ExportFormat;
+import com.testtask.bankcardmanagement.repository.TransactionRepository;
+import com.testtask.bankcardmanagement.service.card.CardService;
+import com.testtask.bankcardmanagement.service.transaction.TransactionExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Service for exporting the transaction history of a card.
+ * The rows are read by a forward-only streaming result set and written to the response one by one,
+ * so the memory used does not depend on the number of transactions
+ * @see TransactionRepository#streamHistoryByCard
+ * @see ExportFormat
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionExportServiceImpl implements TransactionExportService {
+    private static final String CSV_HEADER = "id,type,amount,target_card,datetime,description";
+
+    private final TransactionRepository transactionRepository;
+    private final CardService cardService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The method checks that the card belongs to the current user and prepares the export of its transactions.
+     * The check is done before the response is started, so an error is returned with its status
+     * @param cardId card id for which transactions are exported
+     * @param transactionParamFilter request object containing filter criteria
+     * @param format output format
+     * @return {@link StreamingResponseBody} writing the transactions
+     * @throws TransactionDeclinedException If the card does not belong to the user
+     */
+    @Override
+    public StreamingResponseBody exportByUserCard(Long cardId, TransactionParamFilter transactionParamFilter, ExportFormat format) {
+        if(!cardService.validateCardOwnership(cardId))
+            throw new TransactionDeclinedException("Card does not belong to the user.");
+
+        return createBody(cardId, transactionParamFilter, format);
+    }
+
+    /**
+     * The method prepares the export of the transactions of any card
+     * @param cardId card id for which transactions are exported
+     * @param transactionParamFilter request object containing filter criteria
+     * @param format output format
+     * @return {@link StreamingResponseBody} writing the transactions
+     * @throws CardNotFoundException If the card is not found
+     */
+    @Override
+    public StreamingResponseBody exportByCard(Long cardId, TransactionParamFilter transactionParamFilter, ExportFormat format) {
+        if(!cardService.existById(cardId))
+            throw new CardNotFoundException("The card with such id not found");
+
+        return createBody(cardId, transactionParamFilter, format);
+    }
+
+    /**
+     * The body is written after the controller method returns, so the result set is opened and read
+     * in its own transaction (the stream needs an open connection until the last row)
+     */
+    private StreamingResponseBody createBody(Long cardId, TransactionParamFilter filter, ExportFormat format) {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<TransactionHistoryItem> rows = transactionRepository.streamHistoryByCard(
+                        cardId, filter.type(), filter.fromDate(), filter.toDate())) {
+                    write(rows.iterator(), format, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+    }
+
+    private void write(Iterator<TransactionHistoryItem> rows, ExportFormat format, Writer writer) throws IOException {
+        if(format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        while (rows.hasNext()) {
+            TransactionHistoryItem row = rows.next();
+            writer.write(format == ExportFormat.CSV ? toCsvLine(row) : objectMapper.writeValueAsString(row));
+            writer.write('\n');
+        }
+    }
+
+    private String toCsvLine(TransactionHistoryItem row) {
+        return String.join(",",
+                String.valueOf(row.id()),
+                String.valueOf(row.type()),
+                row.amount().toPlainString(),
+                escapeCsv(row.targetCard()),
+                String.valueOf(row.datetime()),
+                escapeCsv(row.description())
+        );
+    }
+
+    /**
+     * The method quotes the value if it contains a separator, a quote or a line break (RFC 4180)
+     * @return the value for a CSV cell, empty string for {@code null}
+     */
+    private String escapeCsv(String value) {
+        if(value == null)
+            return "";
+        if(value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r"))
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+
+        return value;
+    }
+}
@@ -1,9 +1,12 @@
 package com.testtask.bankcardmanagement.service.transaction.impl;
 
+import com.testtask.bankcardmanagement.config.retryConfig.OptimisticRetry;
 import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.exception.card.CardBalanceException;
 import com.testtask.bankcardmanagement.exception.card.CardDuplicateException;
 import com.testtask.bankcardmanagement.exception.card.CardNotFoundException;
 import com.testtask.bankcardmanagement.exception.limit.LimitExceededException;
+import com.testtask.bankcardmanagement.exception.other.InvalidCursorException;
 import com.testtask.bankcardmanagement.exception.transaction.TransactionDeclinedException;
 import com.testtask.bankcardmanagement.exception.user.UserNotFoundException;
 import com.testtask.bankcardmanagement.model.Card;
@@ -12,33 +15,62 @@ import com.testtask.bankcardmanagement.model.Transaction;
 import com.testtask.bankcardmanagement.model.User;
 import com.testtask.bankcardmanagement.model.dto.card.CardRequest;
 import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
+import com.testtask.bankcardmanagement.model.dto.page.CursorPage;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchItemResult;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferRequest;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionTransferRequest;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.model.enums.BatchItemStatus;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
 import com.testtask.bankcardmanagement.model.enums.LimitType;
 import com.testtask.bankcardmanagement.model.enums.TransactionType;
 import com.testtask.bankcardmanagement.model.mapper.TransactionMapper;
 import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.SliceRepository;
 import com.testtask.bankcardmanagement.repository.TransactionRepository;
 import com.testtask.bankcardmanagement.service.card.CardService;
+import com.testtask.bankcardmanagement.service.idempotency.IdempotencyService;
 import com.testtask.bankcardmanagement.service.limit.LimitService;
+import com.testtask.bankcardmanagement.service.outbox.OutboxService;
 import com.testtask.bankcardmanagement.service.security.SecurityUtil;
+import com.testtask.bankcardmanagement.service.transaction.PendingWriteOff;
 import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import com.testtask.bankcardmanagement.service.transaction.WriteOffSequencer;
 import lombok.RequiredArgsConstructor;
 import org.hibernate.Hibernate;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * Service for operations with card transactions
+ * Service for operations with card transactions.
+ * The posted transactions are written to the outbox in the transaction of the operation ({@link OutboxService})
  * @see CardService
  * @see Card
  * @see Transaction
@@ -49,30 +81,60 @@ import java.util.List;
 public class TransactionServiceImpl implements TransactionService {
     private final TransactionRepository transactionRepository;
     private final CardRepository cardRepository;
+    private final SliceRepository sliceRepository;
     private final AESEncryption aesEncryption;
     private final TransactionMapper transactionMapper;
     private final CardService cardService;
     private final LimitService limitService;
+    private final IdempotencyService idempotencyService;
+    private final OutboxService outboxService;
 
     /**
-     * Method for transferring funds between user cards
+     * Method for transferring funds between user cards.
+     * The cards are loaded by {@link CardService#lockCards} before their balances are read: in the pessimistic mode
+     * they are locked ({@code SELECT ... FOR UPDATE}) and concurrent operations with the same cards are executed one after another,
+     * in the optimistic mode a concurrent change fails on the card version and the operation is repeated ({@link OptimisticRetry}).
+     * {@code READ COMMITTED} isolation is used so that the reads after the lock (spend counters)
+     * see the changes committed by the previous lock holder and not the transaction snapshot
      * @param transactionTransferRequest a request object containing the translation details
+     * @param idempotencyKey key of the request, a repeated request with the key gets the response of the first one
+     *                       without a second transfer, {@code null} if the client does not send it
      * @return an object {@link TransactionResponse} containing information about the transaction carried out
      * @see TransactionTransferRequest
      * @see TransactionResponse
-     * @throws TransactionDeclinedException If the card does not belong to the user
+     * @see IdempotencyService
+     * @throws TransactionDeclinedException If the card does not belong to the user or the sender card is not valid
+     * @throws CardBalanceException If the sender card does not have enough funds
      */
     @Override
-    @Transactional
-    public TransactionResponse transfer(TransactionTransferRequest transactionTransferRequest) {
+    @OptimisticRetry
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public TransactionResponse transfer(TransactionTransferRequest transactionTransferRequest, String idempotencyKey) {
+        if(idempotencyKey == null)
+            return executeTransfer(transactionTransferRequest);
+
+        return idempotencyService.execute(idempotencyKey, "TRANSFER", transactionTransferRequest, TransactionResponse.class,
+                () -> executeTransfer(transactionTransferRequest));
+    }
+
+    private TransactionResponse executeTransfer(TransactionTransferRequest transactionTransferRequest) {
         User user = SecurityUtil.getCurrentUser();
 
-        Card senderCard = cardService.findCardByNumber(transactionTransferRequest.fromCardNumber(), user);
-        Card receiverCard = cardService.findCardByNumber(transactionTransferRequest.toCardNumber(), user);
+        Long senderCardId = cardService.findCardIdByNumber(transactionTransferRequest.fromCardNumber(), user);
+        Long receiverCardId = cardService.findCardIdByNumber(transactionTransferRequest.toCardNumber(), user);
 
-        if(!cardService.validateCardOwnership(senderCard.getId()) || !cardService.validateCardOwnership(receiverCard.getId()))
+        if(!cardService.validateCardOwnership(senderCardId) || !cardService.validateCardOwnership(receiverCardId))
             throw new TransactionDeclinedException("Card does not belong to the user.");
 
+        // Both cards are locked by one query in id order, so opposite transfers cannot deadlock
+        Map<Long, Card> lockedCards = cardService.lockCards(List.of(senderCardId, receiverCardId)).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+        Card senderCard = lockedCards.get(senderCardId);
+        Card receiverCard = lockedCards.get(receiverCardId);
+
+        if(!cardService.isCardAvailable(senderCard))
+            throw new TransactionDeclinedException("The card is not valid.");
+
         LocalDateTime localDateTime = LocalDateTime.now();
 
         Transaction senderTransaction = createTransaction(
@@ -93,54 +155,360 @@ public class TransactionServiceImpl implements TransactionService {
                 localDateTime
         );
 
-        senderCard.setBalance(senderCard.getBalance().subtract(transactionTransferRequest.amount()));
-        receiverCard.setBalance(receiverCard.getBalance().add(transactionTransferRequest.amount()));
+        // The rows are updated in id order, as they are locked, so opposite transfers cannot deadlock in the optimistic mode
+        checkBalance(senderCard, transactionTransferRequest.amount());
+        if(senderCard.getId() <= receiverCard.getId()) {
+            withdraw(senderCard, transactionTransferRequest.amount());
+            deposit(receiverCard, transactionTransferRequest.amount());
+        } else {
+            deposit(receiverCard, transactionTransferRequest.amount());
+            withdraw(senderCard, transactionTransferRequest.amount());
+        }
 
-        cardRepository.saveAll(List.of(senderCard, receiverCard));
         List<Transaction> savedTransactions = transactionRepository.saveAll(List.of(senderTransaction, receiverTransaction));
+        limitService.registerWriteOff(senderCard, transactionTransferRequest.amount(), localDateTime);
+        outboxService.appendPostedTransactions(savedTransactions);
 
         return transactionMapper.toTransactionResponse(savedTransactions.get(0));
     }
 
     /**
-     * Method for debiting funds from the user's card
+     * Method for transferring funds from one user card to several user cards in one transaction.
+     * The recipient cards are found by one query and locked together with the sender card by one {@link CardService#lockCards} call,
+     * the limits and the balance of the sender card are checked once for the total of the batch.
+     * Every card is changed by one {@code UPDATE} in id order, the transactions are inserted by JDBC batches on the commit.
+     * <p>A transfer to a card that is not found on the user's account or to the sender card itself is rejected,
+     * the other transfers are executed. The whole batch is declined if the sender card is not valid
+     * or the total exceeds the limits or the balance</p>
+     * @param transactionBatchTransferRequest a request object containing the sender card and the transfers
+     * @param idempotencyKey key of the request, a repeated request with the key gets the response of the first one
+     *                       without a second batch, {@code null} if the client does not send it
+     * @return an object {@link TransactionBatchTransferResponse} containing the result of every transfer in the order of the request
+     * @see TransactionBatchTransferRequest
+     * @see IdempotencyService
+     * @throws TransactionDeclinedException If the sender card does not belong to the user or is not valid
+     * @throws CardBalanceException If the sender card does not have enough funds for the total
+     */
+    @Override
+    @OptimisticRetry
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public TransactionBatchTransferResponse transferBatch(TransactionBatchTransferRequest transactionBatchTransferRequest,
+                                                          String idempotencyKey) {
+        if(idempotencyKey == null)
+            return executeTransferBatch(transactionBatchTransferRequest);
+
+        return idempotencyService.execute(idempotencyKey, "TRANSFER_BATCH", transactionBatchTransferRequest,
+                TransactionBatchTransferResponse.class, () -> executeTransferBatch(transactionBatchTransferRequest));
+    }
+
+    private TransactionBatchTransferResponse executeTransferBatch(TransactionBatchTransferRequest request) {
+        User user = SecurityUtil.getCurrentUser();
+
+        Long senderCardId = cardService.findCardIdByNumber(request.fromCardNumber(), user);
+        if(!cardService.validateCardOwnership(senderCardId))
+            throw new TransactionDeclinedException("Card does not belong to the user.");
+
+        // The recipient cards are searched on the user's account only, so their ownership is not checked again
+        List<TransactionBatchTransferItem> items = request.items();
+        Map<String, Long> receiverCardIds = cardService.findCardIdsByNumbers(
+                items.stream().map(TransactionBatchTransferItem::toCardNumber).toList(), user);
+
+        TransactionBatchItemResult[] results = new TransactionBatchItemResult[items.size()];
+        Map<Integer, Long> acceptedItems = new LinkedHashMap<>();
+        for(int i = 0; i < items.size(); i++) {
+            Long receiverCardId = receiverCardIds.get(items.get(i).toCardNumber());
+            if(receiverCardId == null)
+                results[i] = new TransactionBatchItemResult(i, BatchItemStatus.REJECTED, null, "You don't have a card with that number.");
+            else if(receiverCardId.equals(senderCardId))
+                results[i] = new TransactionBatchItemResult(i, BatchItemStatus.REJECTED, null, "The recipient card cannot be the sender card.");
+            else
+                acceptedItems.put(i, receiverCardId);
+        }
+
+        if(acceptedItems.isEmpty())
+            return toBatchTransferResponse(BigDecimal.ZERO, results);
+
+        Set<Long> cardIds = new HashSet<>(acceptedItems.values());
+        cardIds.add(senderCardId);
+        List<Card> lockedCards = cardService.lockCards(cardIds);
+        Map<Long, Card> lockedCardsById = lockedCards.stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+        Card senderCard = lockedCardsById.get(senderCardId);
+
+        if(!cardService.isCardAvailable(senderCard))
+            throw new TransactionDeclinedException("The card is not valid.");
+
+        BigDecimal totalAmount = acceptedItems.keySet().stream()
+                .map(index -> items.get(index).amount())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        limitService.checkCardLimits(senderCard, totalAmount);
+        checkBalance(senderCard, totalAmount);
+
+        LocalDateTime localDateTime = LocalDateTime.now();
+        String senderMaskedNumber = maskTargetNumber(request.fromCardNumber());
+
+        List<Transaction> transactions = new ArrayList<>(acceptedItems.size() * 2);
+        Map<Integer, Transaction> senderTransactions = new HashMap<>();
+        Map<Long, BigDecimal> receivedAmounts = new HashMap<>();
+        Map<Long, Long> receivedCounts = new HashMap<>();
+        acceptedItems.forEach((index, receiverCardId) -> {
+            TransactionBatchTransferItem item = items.get(index);
+            String description = item.description() != null ? item.description() : request.description();
+
+            Transaction senderTransaction = createTransaction(
+                    senderCard,
+                    TransactionType.WRITE_OFF,
+                    item.amount(),
+                    description,
+                    maskTargetNumber(item.toCardNumber()),
+                    localDateTime
+            );
+            Transaction receiverTransaction = createTransaction(
+                    lockedCardsById.get(receiverCardId),
+                    TransactionType.REPLENISHMENT,
+                    item.amount(),
+                    description,
+                    senderMaskedNumber,
+                    localDateTime
+            );
+
+            transactions.add(senderTransaction);
+            transactions.add(receiverTransaction);
+            senderTransactions.put(index, senderTransaction);
+            receivedAmounts.merge(receiverCardId, item.amount(), BigDecimal::add);
+            receivedCounts.merge(receiverCardId, 1L, Long::sum);
+        });
+
+        // One UPDATE per card in id order, as the cards are locked, so concurrent batches cannot deadlock in the optimistic mode
+        for(Card card : lockedCards) {
+            if(card.getId().equals(senderCardId))
+                withdraw(card, totalAmount, acceptedItems.size());
+            else
+                deposit(card, receivedAmounts.get(card.getId()), receivedCounts.get(card.getId()));
+        }
+
+        transactionRepository.saveAll(transactions);
+        limitService.registerWriteOff(senderCard, totalAmount, localDateTime);
+        outboxService.appendPostedTransactions(transactions);
+
+        senderTransactions.forEach((index, transaction) -> results[index] = new TransactionBatchItemResult(
+                index, BatchItemStatus.COMPLETED, transactionMapper.toTransactionResponse(transaction), null));
+
+        return toBatchTransferResponse(totalAmount, results);
+    }
+
+    private TransactionBatchTransferResponse toBatchTransferResponse(BigDecimal totalAmount, TransactionBatchItemResult[] results) {
+        int completed = (int) Arrays.stream(results)
+                .filter(result -> result.status() == BatchItemStatus.COMPLETED)
+                .count();
+
+        return new TransactionBatchTransferResponse(totalAmount, completed, results.length - completed, List.of(results));
+    }
+
+    /**
+     * Method for debiting funds from the user's card.
+     * The card is loaded by {@link CardService#lockCards} before the limits and the balance are checked,
+     * so concurrent write-offs from the same card are executed one after another (pessimistic mode)
+     * or repeated after a version conflict (optimistic mode, {@link OptimisticRetry}).
+     * {@code READ COMMITTED} isolation is used so that the spend counters read after the lock are up to date
      * @param transactionWriteOffRequest request object containing the write-off details
+     * @param idempotencyKey key of the request, a repeated request with the key gets the response of the first one
+     *                       without a second write-off, {@code null} if the client does not send it
      * @return an object {@link TransactionResponse} containing information about the transaction carried out
      * @see TransactionWriteOffRequest
      * @see TransactionResponse
+     * @see IdempotencyService
      * @throws TransactionDeclinedException If the card does not belong to the user or the card is not valid
+     * @throws CardBalanceException If the card does not have enough funds
      */
     @Override
-    @Transactional
-    public TransactionResponse writeOff(TransactionWriteOffRequest transactionWriteOffRequest) {
+    @OptimisticRetry
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public TransactionResponse writeOff(TransactionWriteOffRequest transactionWriteOffRequest, String idempotencyKey) {
+        if(idempotencyKey == null)
+            return executeWriteOff(transactionWriteOffRequest);
+
+        return idempotencyService.execute(idempotencyKey, "WRITE_OFF", transactionWriteOffRequest, TransactionResponse.class,
+                () -> executeWriteOff(transactionWriteOffRequest));
+    }
+
+    private TransactionResponse executeWriteOff(TransactionWriteOffRequest transactionWriteOffRequest) {
         User fromUser = SecurityUtil.getCurrentUser();
-        Card senderCard = cardService.findCardByNumber(transactionWriteOffRequest.fromCardNumber(), fromUser);
+        Long senderCardId = cardService.findCardIdByNumber(transactionWriteOffRequest.fromCardNumber(), fromUser);
 
-        if(!cardService.validateCardOwnership(senderCard.getId()))
+        if(!cardService.validateCardOwnership(senderCardId))
             throw new TransactionDeclinedException("Card does not belong to the user.");
 
+        // The balance and the limit counters are read after the card is locked
+        Card senderCard = cardService.lockCards(List.of(senderCardId)).get(0);
+
         if(!cardService.isCardAvailable(senderCard))
             throw new TransactionDeclinedException("The card is not valid.");
 
         limitService.checkCardLimits(senderCard, transactionWriteOffRequest.amount());
 
+        LocalDateTime localDateTime = LocalDateTime.now();
+
         Transaction writeOffTransaction = createTransaction(
                 senderCard,
                 TransactionType.WRITE_OFF,
                 transactionWriteOffRequest.amount(),
                 transactionWriteOffRequest.description(),
                 null,
-                LocalDateTime.now()
+                localDateTime
         );
 
-        senderCard.setBalance(senderCard.getBalance().subtract(transactionWriteOffRequest.amount()));
+        checkBalance(senderCard, transactionWriteOffRequest.amount());
+        withdraw(senderCard, transactionWriteOffRequest.amount());
 
-        cardRepository.save(senderCard);
         Transaction savedTransaction = transactionRepository.save(writeOffTransaction);
+        limitService.registerWriteOff(senderCard, transactionWriteOffRequest.amount(), localDateTime);
+        outboxService.appendPostedTransactions(List.of(savedTransaction));
 
         return transactionMapper.toTransactionResponse(savedTransaction);
     }
 
+    /**
+     * Method for debiting a group of write-offs from one card in one transaction (group commit, see {@link WriteOffSequencer}).
+     * The card is locked once, every write-off is checked against the limits and the balance together with
+     * the write-offs accepted before it, a write-off that does not pass is rejected and the others are executed.
+     * The accepted write-offs are applied by one balance {@code UPDATE}, one spend counter update and a JDBC batch of inserts.
+     * <p>The results of the write-offs are completed after the commit, so a caller never gets a response of a rolled back write-off</p>
+     * @param cardId id of the card, the ownership is checked before the write-offs are queued
+     * @param writeOffs write-offs of the group in the queue order
+     * @see PendingWriteOff
+     * @throws TransactionDeclinedException If the card is not valid, the whole group is declined
+     */
+    @Override
+    @OptimisticRetry
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public void writeOffGroup(Long cardId, List<PendingWriteOff> writeOffs) {
+        Card card = cardService.lockCards(List.of(cardId)).get(0);
+
+        if(!cardService.isCardAvailable(card))
+            throw new TransactionDeclinedException("The card is not valid.");
+
+        LocalDateTime localDateTime = LocalDateTime.now();
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        Map<PendingWriteOff, Transaction> acceptedWriteOffs = new LinkedHashMap<>();
+        List<Runnable> completions = new ArrayList<>(writeOffs.size());
+
+        for(PendingWriteOff writeOff : writeOffs) {
+            BigDecimal amount = writeOff.request().amount();
+            try {
+                limitService.checkCardLimits(card, totalAmount.add(amount));
+                if(card.getBalance().subtract(totalAmount).compareTo(amount) < 0)
+                    throw new CardBalanceException("Insufficient funds on the card.");
+            } catch (LimitExceededException | CardBalanceException e) {
+                completions.add(() -> writeOff.result().completeExceptionally(e));
+                continue;
+            }
+
+            totalAmount = totalAmount.add(amount);
+            Transaction transaction = createTransaction(
+                    card,
+                    TransactionType.WRITE_OFF,
+                    amount,
+                    writeOff.request().description(),
+                    null,
+                    localDateTime
+            );
+            acceptedWriteOffs.put(writeOff, transaction);
+        }
+
+        if(!acceptedWriteOffs.isEmpty()) {
+            withdraw(card, totalAmount, acceptedWriteOffs.size());
+            transactionRepository.saveAll(acceptedWriteOffs.values());
+            limitService.registerWriteOff(card, totalAmount, localDateTime);
+            outboxService.appendPostedTransactions(acceptedWriteOffs.values());
+        }
+
+        acceptedWriteOffs.forEach((writeOff, transaction) -> {
+            TransactionResponse response = transactionMapper.toTransactionResponse(transaction);
+            completions.add(() -> writeOff.result().complete(response));
+        });
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                completions.forEach(Runnable::run);
+            }
+        });
+    }
+
+    /**
+     * The method checks that the card has enough funds for the operation
+     * @param card the card from which the funds are written off
+     * @param amount the amount of the write-off
+     * @throws CardBalanceException If the balance is less than the amount
+     */
+    private void checkBalance(Card card, BigDecimal amount) {
+        if(card.getBalance().compareTo(amount) < 0)
+            throw new CardBalanceException("Insufficient funds on the card.");
+    }
+
+    /**
+     * The method writes off the funds by one conditional {@code UPDATE}: the card must be active, have enough funds
+     * and the version read with the card. The balance of the loaded card is changed only in memory
+     * (the balance column is not updated by dirty checking)
+     * @param card the card from which the funds are written off
+     * @param amount the amount of the write-off
+     * @throws ObjectOptimisticLockingFailureException If the card was changed after it was read, the operation is repeated
+     */
+    private void withdraw(Card card, BigDecimal amount) {
+        int updated = cardRepository.withdraw(card.getId(), card.getVersion(), CardStatus.ACTIVE, amount);
+        if(updated == 0)
+            throw new ObjectOptimisticLockingFailureException(Card.class, card.getId());
+
+        card.setBalance(card.getBalance().subtract(amount));
+    }
+
+    /**
+     * The method adds the funds to the card by one {@code UPDATE}
+     * @param card the card to which the funds are credited
+     * @param amount the amount of the replenishment
+     * @throws CardNotFoundException If the card was deleted
+     */
+    private void deposit(Card card, BigDecimal amount) {
+        int updated = cardRepository.deposit(card.getId(), amount);
+        if(updated == 0)
+            throw new CardNotFoundException("The card with such id not found.");
+
+        card.setBalance(card.getBalance().add(amount));
+    }
+
+    /**
+     * The method writes off the funds of several transactions by one conditional {@code UPDATE}
+     * and increases the transaction counter of the card by their number
+     * @param card the card from which the funds are written off
+     * @param amount the total amount of the transactions
+     * @param transactionCount number of the transactions
+     * @throws ObjectOptimisticLockingFailureException If the card was changed after it was read, the operation is repeated
+     */
+    private void withdraw(Card card, BigDecimal amount, long transactionCount) {
+        int updated = cardRepository.withdrawBatch(card.getId(), card.getVersion(), CardStatus.ACTIVE, amount, transactionCount);
+        if(updated == 0)
+            throw new ObjectOptimisticLockingFailureException(Card.class, card.getId());
+
+        card.setBalance(card.getBalance().subtract(amount));
+    }
+
+    /**
+     * The method adds the funds of several transactions to the card by one {@code UPDATE}
+     * and increases the transaction counter of the card by their number
+     * @param card the card to which the funds are credited
+     * @param amount the total amount of the transactions
+     * @param transactionCount number of the transactions
+     * @throws CardNotFoundException If the card was deleted
+     */
+    private void deposit(Card card, BigDecimal amount, long transactionCount) {
+        int updated = cardRepository.depositBatch(card.getId(), amount, transactionCount);
+        if(updated == 0)
+            throw new CardNotFoundException("The card with such id not found.");
+
+        card.setBalance(card.getBalance().add(amount));
+    }
+
     /**
      * Method for creating a transaction object
      * @param card the card for which the transfer or debit operation is performed
@@ -175,16 +543,18 @@ public class TransactionServiceImpl implements TransactionService {
      * @param size page size
      * @param sortList list of fields to sort by
      * @param sortOrder sort direction (ASC - ascending / DESC - descending)
-     * @return an object {@link Page<TransactionResponse>} representing a page of transactions
+     * @param countMode how the total number of transactions is calculated, the approximate total is the transaction counter of the card
+     * @return an object {@link Slice<TransactionResponse>} representing a page of transactions ({@link Page} for exact and approximate totals)
      * @see TransactionParamFilter
-     * @see Page
+     * @see CountMode
      * @see TransactionResponse
      * @throws TransactionDeclinedException If the card does not belong to the user
      */
     @Override
-    public Page<TransactionResponse> getTransactionsByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
-                                                               int page, int size,
-                                                               List<String> sortList, String sortOrder) {
+    @Transactional(readOnly = true)
+    public Slice<TransactionResponse> getTransactionsByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                                int page, int size,
+                                                                List<String> sortList, String sortOrder, CountMode countMode) {
         if(!cardService.validateCardOwnership(cardId))
             throw new TransactionDeclinedException("Card does not belong to the user.");
 
@@ -196,7 +566,7 @@ public class TransactionServiceImpl implements TransactionService {
                 true
         );
 
-        return getAllTransactionsByCard(updatedFilter, page, size, sortList, sortOrder);
+        return getAllTransactionsByCard(updatedFilter, page, size, sortList, sortOrder, countMode);
     }
 
     /**
@@ -207,17 +577,122 @@ public class TransactionServiceImpl implements TransactionService {
      * @param size page size
      * @param sortList list of fields to sort by
      * @param sortOrder sort direction (ASC - ascending / DESC - descending)
-     * @return an object {@link Page<TransactionResponse>} representing a page of transactions
+     * @param countMode how the total number of transactions is calculated, the approximate total is the transaction counter of the card
+     * @return an object {@link Slice<TransactionResponse>} representing a page of transactions ({@link Page} for exact and approximate totals)
      * @see TransactionParamFilter
-     * @see Page
+     * @see CountMode
      * @see TransactionResponse
      * @throws TransactionDeclinedException If the card does not belong to the user
      */
     @Override
-    public Page<TransactionResponse> getTransactionsByCard(Long cardId, TransactionParamFilter transactionParamFilter,
-                                                           int page, int size,
-                                                           List<String> sortList, String sortOrder) {
+    @Transactional(readOnly = true)
+    public Slice<TransactionResponse> getTransactionsByCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                            int page, int size,
+                                                            List<String> sortList, String sortOrder, CountMode countMode) {
+
+        TransactionParamFilter updatedFilter = new TransactionParamFilter(
+                cardId,
+                transactionParamFilter.type(),
+                transactionParamFilter.fromDate(),
+                transactionParamFilter.toDate(),
+                false
+        );
+
+        return getAllTransactionsByCard(updatedFilter, page, size, sortList, sortOrder, countMode);
+    }
+
+    /**
+     * Method to get a page of the transaction history of the specified card for the current user, checking if the card belongs to the user
+     * @param cardId card id for which transactions need to be received
+     * @param transactionParamFilter request object containing filter criteria
+     * @param page page number
+     * @param size page size
+     * @param sortList list of fields to sort by
+     * @param sortOrder sort direction (ASC - ascending / DESC - descending)
+     * @param countMode how the total number of transactions is calculated, the approximate total is the transaction counter of the card
+     * @return an object {@link TransactionHistoryResponse} containing the card and the transactions of the page
+     * @see TransactionParamFilter
+     * @see TransactionHistoryResponse
+     * @throws TransactionDeclinedException If the card does not belong to the user
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public TransactionHistoryResponse getTransactionHistoryByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                                      int page, int size,
+                                                                      List<String> sortList, String sortOrder, CountMode countMode) {
+        if(!cardService.validateCardOwnership(cardId))
+            throw new TransactionDeclinedException("Card does not belong to the user.");
+
+        return getTransactionHistory(cardId, transactionParamFilter, page, size, sortList, sortOrder, countMode);
+    }
+
+    /**
+     * Method to get a page of the transaction history of the specified card
+     * @param cardId card id for which transactions need to be received
+     * @param transactionParamFilter request object containing filter criteria
+     * @param page page number
+     * @param size page size
+     * @param sortList list of fields to sort by
+     * @param sortOrder sort direction (ASC - ascending / DESC - descending)
+     * @param countMode how the total number of transactions is calculated, the approximate total is the transaction counter of the card
+     * @return an object {@link TransactionHistoryResponse} containing the card and the transactions of the page
+     * @see TransactionParamFilter
+     * @see TransactionHistoryResponse
+     * @throws CardNotFoundException If the card is not found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public TransactionHistoryResponse getTransactionHistoryByCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                                  int page, int size,
+                                                                  List<String> sortList, String sortOrder, CountMode countMode) {
+        return getTransactionHistory(cardId, transactionParamFilter, page, size, sortList, sortOrder, countMode);
+    }
+
+    /**
+     * Method to get a page of transactions of the specified card for the current user by cursor, checking if the card belongs to the user
+     * @param cardId card id for which transactions need to be received
+     * @param transactionParamFilter request object containing filter criteria
+     * @param cursor cursor of the page returned in the previous page, {@code null} for the first page
+     * @param size page size
+     * @param sortOrder sort direction by transaction date (ASC - ascending / DESC - descending)
+     * @return an object {@link CursorPage<TransactionResponse>} containing the transactions and the cursor of the next page
+     * @see TransactionParamFilter
+     * @see CursorPage
+     * @throws TransactionDeclinedException If the card does not belong to the user
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionResponse> scrollTransactionsByUserCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                                        String cursor, int size, String sortOrder) {
+        if(!cardService.validateCardOwnership(cardId))
+            throw new TransactionDeclinedException("Card does not belong to the user.");
 
+        TransactionParamFilter updatedFilter = new TransactionParamFilter(
+                cardId,
+                transactionParamFilter.type(),
+                transactionParamFilter.fromDate(),
+                transactionParamFilter.toDate(),
+                true
+        );
+
+        return scrollTransactions(updatedFilter, cursor, size, sortOrder);
+    }
+
+    /**
+     * Method to get a page of transactions of the specified card by cursor
+     * @param cardId card id for which transactions need to be received
+     * @param transactionParamFilter request object containing filter criteria
+     * @param cursor cursor of the page returned in the previous page, {@code null} for the first page
+     * @param size page size
+     * @param sortOrder sort direction by transaction date (ASC - ascending / DESC - descending)
+     * @return an object {@link CursorPage<TransactionResponse>} containing the transactions and the cursor of the next page
+     * @see TransactionParamFilter
+     * @see CursorPage
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionResponse> scrollTransactionsByCard(Long cardId, TransactionParamFilter transactionParamFilter,
+                                                                    String cursor, int size, String sortOrder) {
         TransactionParamFilter updatedFilter = new TransactionParamFilter(
                 cardId,
                 transactionParamFilter.type(),
@@ -226,7 +701,85 @@ public class TransactionServiceImpl implements TransactionService {
                 false
         );
 
-        return getAllTransactionsByCard(updatedFilter, page, size, sortList, sortOrder);
+        return scrollTransactions(updatedFilter, cursor, size, sortOrder);
+    }
+
+    /**
+     * Method to get the transaction history of a card. The card is loaded and mapped once for the page,
+     * the transactions are selected as flat {@link TransactionHistoryItem} rows without loading the entities
+     * @param cardId card id for which transactions need to be received
+     * @param filter request object containing filter criteria (the card id and ownership flag of the filter are not used)
+     * @param page page number
+     * @param size page size
+     * @param sortList list of fields to sort by
+     * @param sortOrder sort direction (ASC - ascending / DESC - descending)
+     * @param countMode how the total number of transactions is calculated
+     * @return an object {@link TransactionHistoryResponse}
+     * @see CountMode
+     * @throws CardNotFoundException If the card is not found
+     */
+    private TransactionHistoryResponse getTransactionHistory(Long cardId, TransactionParamFilter filter,
+                                                             int page, int size,
+                                                             List<String> sortList, String sortOrder, CountMode countMode) {
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(() -> new CardNotFoundException("The card with such id not found"));
+
+        Pageable pageable = PageRequest.of(page, size, Sort.by(createSortOrder(sortList, sortOrder)));
+
+        if(countMode == CountMode.EXACT) {
+            Page<TransactionHistoryItem> transactions = transactionRepository.findHistoryByCard(
+                    cardId, filter.type(), filter.fromDate(), filter.toDate(), pageable);
+            return transactionMapper.toTransactionHistoryResponse(card, transactions, transactions.getTotalElements());
+        }
+
+        Slice<TransactionHistoryItem> transactions = transactionRepository.findHistorySliceByCard(
+                cardId, filter.type(), filter.fromDate(), filter.toDate(), pageable);
+        return transactionMapper.toTransactionHistoryResponse(card, transactions,
+                countMode == CountMode.APPROXIMATE ? card.getTransactionCount() : null);
+    }
+
+    /**
+     * Method to get transactions on a card by keyset pagination: instead of skipping {@code page * size} rows,
+     * the query continues after the (transaction date, id) of the last transaction of the previous page,
+     * so every page is read by the (card_id, transaction_date, id) index with the same cost.
+     * One extra transaction is read to find out whether there is a next page, no count query is executed
+     * @param filter request object containing filter criteria
+     * @param cursor cursor of the previous page, {@code null} for the first page
+     * @param size page size
+     * @param sortOrder sort direction (ASC - ascending / DESC - descending)
+     * @return an object {@link CursorPage<TransactionResponse>}
+     * @see TransactionCursor
+     * @see TransactionSpecification#after
+     * @throws CardNotFoundException If the card is not found
+     * @throws InvalidCursorException If the cursor is damaged
+     */
+    private CursorPage<TransactionResponse> scrollTransactions(TransactionParamFilter filter, String cursor,
+                                                               int size, String sortOrder) {
+        if(!cardService.existById(filter.cardId()))
+            throw new CardNotFoundException("The card with such id not found");
+
+        int pageSize = Math.max(1, size);
+        Sort.Direction direction = Sort.Direction.fromString(sortOrder);
+        TransactionCursor position = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+
+        Specification<Transaction> spec = TransactionSpecification.build(filter)
+                .and(TransactionSpecification.after(position, direction));
+
+        List<Transaction> transactions = transactionRepository.findBy(spec, query -> query
+                .sortBy(Sort.by(direction, "transactionDate", "id"))
+                .project("card", "card.user")
+                .limit(pageSize + 1)
+                .all());
+
+        boolean hasNext = transactions.size() > pageSize;
+        List<Transaction> pageTransactions = hasNext ? transactions.subList(0, pageSize) : transactions;
+        String nextCursor = hasNext ? TransactionCursor.of(pageTransactions.get(pageSize - 1)).encode() : null;
+
+        return new CursorPage<>(
+                pageTransactions.stream().map(transactionMapper::toTransactionResponse).toList(),
+                pageSize,
+                nextCursor
+        );
     }
 
     /**
@@ -236,17 +789,18 @@ public class TransactionServiceImpl implements TransactionService {
      * @param size page size
      * @param sortList list of fields to sort by
      * @param sortOrder sort direction (ASC - ascending / DESC - descending)
-     * @return an object {@link Page<TransactionResponse>} representing a page of transactions
+     * @param countMode how the total number of transactions is calculated, the approximate total is the transaction counter of the card
+     * @return an object {@link Slice<TransactionResponse>} representing a page of transactions ({@link Page} for exact and approximate totals)
      * @see TransactionParamFilter
-     * @see Page
+     * @see CountMode
      * @see TransactionResponse
      * @see Sort.Order
      * @see TransactionSpecification
      * @throws CardNotFoundException If the card is not found
      */
-    private Page<TransactionResponse> getAllTransactionsByCard(TransactionParamFilter filter,
-                                                               int page, int size,
-                                                               List<String> sortList, String sortOrder) {
+    private Slice<TransactionResponse> getAllTransactionsByCard(TransactionParamFilter filter,
+                                                                int page, int size,
+                                                                List<String> sortList, String sortOrder, CountMode countMode) {
 
         if(!cardService.existById(filter.cardId()))
             throw new CardNotFoundException("The card with such id not found");
@@ -256,15 +810,15 @@ public class TransactionServiceImpl implements TransactionService {
 
         Specification<Transaction> spec = TransactionSpecification.build(filter);
 
-        List<TransactionResponse> transactions = transactionRepository.findAll(spec, pageable).stream()
-                .map(transactionMapper::toTransactionResponse)
-                .toList();
-
-        return new PageImpl<>(
-                transactions,
-                pageable,
-                transactions.size()
-        );
+        return switch (countMode) {
+            case EXACT -> transactionRepository.findAll(spec, pageable).map(transactionMapper::toTransactionResponse);
+            case SLICE -> sliceRepository.findAll(Transaction.class, spec, pageable, "card.user").map(transactionMapper::toTransactionResponse);
+            case APPROXIMATE -> new PageImpl<>(
+                    sliceRepository.findAll(Transaction.class, spec, pageable, "card.user").map(transactionMapper::toTransactionResponse).getContent(),
+                    pageable,
+                    cardRepository.findTransactionCountById(filter.cardId()).orElse(0L)
+            );
+        };
     }
 
     /**
@@ -6,6 +6,8 @@ import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFil
 import com.testtask.bankcardmanagement.model.enums.TransactionType;
 import com.testtask.bankcardmanagement.service.security.SecurityUtil;
 import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDateTime;
@@ -53,4 +55,38 @@ public class TransactionSpecification {
                 criteriaBuilder.lessThan(root.get("transactionDate"), beforeDateTime) :
                 criteriaBuilder.conjunction();
     }
+
+    /**
+     * Keyset condition: transactions after the cursor position in the order (transaction date, id).
+     * The redundant {@code transactionDate <=} / {@code >=} condition lets the database use a range scan
+     * of the (card_id, transaction_date, id) index
+     * @param cursor position of the last transaction of the previous page, {@code null} for the first page
+     * @param direction sort direction
+     */
+    public static Specification<Transaction> after(TransactionCursor cursor, Sort.Direction direction) {
+        if(cursor == null)
+            return (root, query, criteriaBuilder) -> criteriaBuilder.conjunction();
+
+        return (root, query, cb) -> {
+            Path<LocalDateTime> date = root.get("transactionDate");
+            Path<Long> id = root.get("id");
+            if(direction.isAscending()) {
+                return cb.and(
+                        cb.greaterThanOrEqualTo(date, cursor.transactionDate()),
+                        cb.or(
+                                cb.greaterThan(date, cursor.transactionDate()),
+                                cb.greaterThan(id, cursor.id())
+                        )
+                );
+            }
+
+            return cb.and(
+                    cb.lessThanOrEqualTo(date, cursor.transactionDate()),
+                    cb.or(
+                            cb.lessThan(date, cursor.transactionDate()),
+                            cb.lessThan(id, cursor.id())
+                    )
+            );
+        };
+    }
 }
@@ -0,0 +1,29 @@
+package com.testtask.bankcardmanagement;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base class for tests against a real MySQL started in Docker (Liquibase creates the schema on startup).
+ * The container is shared by all test classes, tests are skipped if Docker is not available
+ */
+@SpringBootTest(properties = {
+        "my.encrypt_key=0123456789abcdef0123456789abcdef",
+        "my.encryption_key=MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=",
+        "my.hash_key=integration-test-hash-key",
+        "my.backfill.enabled=false",
+        "my.spend_counters.rebuild_on_startup=false",
+        "spring.jpa.show-sql=false"
+})
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class AbstractIntegrationTest {
+    @ServiceConnection
+    protected static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.4");
+
+    static {
+        // Started once and stopped with the JVM, so the cached Spring context always points at a running database
+        MYSQL.start();
+    }
+}
@@ -0,0 +1,164 @@
+package com.testtask.bankcardmanagement;
+
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.security.jwt.JwtService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MySQLContainer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the virtual thread mode ({@code spring.threads.virtual.enabled}) against the platform request threads:
+ * the whole application is started on a random port with a MySQL in Docker, and more clients than Tomcat
+ * platform threads (200) send requests over HTTP. The result is the number of requests per second,
+ * {@code -prof gc} or the {@code http.server.requests} metrics give the latencies.
+ * <ul>
+ *     <li>{@code history} - a read of the card history (one query, one connection from the pool)</li>
+ *     <li>{@code writeOff} - a write-off, each client from its own card, so the clients do not wait for the same row lock</li>
+ * </ul>
+ * The virtual thread mode needs a Java 21 runtime, the benchmark fails for {@code virtualThreads=true} on Java 17.
+ * Run on a Java 21 JDK with Docker available:
+ * {@code ./mvnw -P benchmark test-compile exec:exec -Dbenchmark=VirtualThreadsLoadBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Fork(1)
+@Threads(400)
+public class VirtualThreadsLoadBenchmark {
+    private static final AtomicLong CARD_NUMBERS = new AtomicLong(6666_0000_0000_0000L);
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private MySQLContainer<?> mysql;
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private URI baseUri;
+    private String token;
+    private User user;
+    private Long historyCardId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if(virtualThreads && Runtime.version().feature() < 21)
+            throw new IllegalStateException("The virtual thread mode needs Java 21, the benchmark runs on Java " + Runtime.version().feature());
+
+        mysql = new MySQLContainer<>("mysql:8.4");
+        mysql.start();
+        context = new SpringApplicationBuilder(BankcardmanagementApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + mysql.getJdbcUrl(),
+                        "spring.datasource.username=" + mysql.getUsername(),
+                        "spring.datasource.password=" + mysql.getPassword(),
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.jpa.show-sql=false",
+                        "my.encrypt_key=0123456789abcdef0123456789abcdef",
+                        "my.encryption_key=MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=",
+                        "my.hash_key=load-test-hash-key",
+                        "my.backfill.enabled=false",
+                        "my.spend_counters.rebuild_on_startup=false",
+                        "logging.level.root=WARN"
+                )
+                .run();
+
+        baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1/user/");
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        user = context.getBean(UserRepository.class)
+                .save(new User(null, UUID.randomUUID() + "@test.com", "password", UserRole.USER, null, null));
+        token = "Bearer " + context.getBean(JwtService.class).generateToken(user);
+        historyCardId = createCard(nextCardNumber());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(context != null)
+            context.close();
+        if(mysql != null)
+            mysql.stop();
+    }
+
+    @Benchmark
+    public int history() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(baseUri.resolve("get-transactions-by-user-card/" + historyCardId + "/history?countMode=SLICE"))
+                .method("GET", HttpRequest.BodyPublishers.ofString("{}")));
+    }
+
+    @Benchmark
+    public int writeOff(ClientCard clientCard) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(baseUri.resolve("write-off"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"fromCardNumber\": \"" + clientCard.cardNumber + "\", \"amount\": 0.01}")));
+    }
+
+    /**
+     * Card of one client thread, created before the measurement
+     */
+    @State(Scope.Thread)
+    public static class ClientCard {
+        private String cardNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(VirtualThreadsLoadBenchmark benchmark) {
+            cardNumber = nextCardNumber();
+            benchmark.createCard(cardNumber);
+        }
+    }
+
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = httpClient.send(request
+                .header("Authorization", token)
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.discarding());
+        // A failed request must not be counted as throughput
+        if(response.statusCode() != 200)
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " of " + response.request().uri());
+
+        return response.statusCode();
+    }
+
+    private static String nextCardNumber() {
+        return String.valueOf(CARD_NUMBERS.incrementAndGet());
+    }
+
+    private Long createCard(String cardNumber) {
+        Card card = new Card();
+        card.setEncryptedNumber(context.getBean(AESEncryption.class).encrypt(cardNumber));
+        card.setCardHash(context.getBean(HMACHashing.class).hash(cardNumber));
+        card.setLastFourDigits(cardNumber.substring(12));
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal("1000000.00"));
+        card.setLimits(new ArrayList<>(List.of(new Limit(null, card, LimitType.NO_LIMIT, null))));
+
+        return context.getBean(CardRepository.class).save(card).getId();
+    }
+}
@@ -0,0 +1,115 @@
+package com.testtask.bankcardmanagement.config.retryConfig;
+
+import com.testtask.bankcardmanagement.exception.transaction.TransactionConflictException;
+import com.testtask.bankcardmanagement.exception.transaction.TransactionDeclinedException;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OptimisticRetryInterceptorTest {
+    @Mock private ProxyMethodInvocation invocation;
+    @Mock private ProxyMethodInvocation attempt;
+    @Mock private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OptimisticRetryInterceptor underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new OptimisticRetryInterceptor(meterRegistryProvider, 3, 0, 0);
+    }
+
+    @Test
+    void invoke_whenConflictIsResolvedByRetry_shouldReturnResultAndCountRetries() throws Throwable {
+        // Given
+        givenWriteOffInvocation();
+        when(meterRegistryProvider.getObject()).thenReturn(meterRegistry);
+        when(attempt.proceed())
+                .thenThrow(conflict())
+                .thenThrow(conflict())
+                .thenReturn("result");
+
+        // When
+        Object actualResult = underTest.invoke(invocation);
+
+        // Then
+        assertThat(actualResult).isEqualTo("result");
+        assertThat(meterRegistry.counter("payment.optimistic.retries", "operation", "writeOff").count()).isEqualTo(2);
+        assertThat(meterRegistry.find("payment.optimistic.conflicts").counter()).isNull();
+
+        verify(attempt, times(3)).proceed();
+    }
+
+    @Test
+    void invoke_whenAllAttemptsConflict_shouldThrowTransactionConflictException() throws Throwable {
+        // Given
+        givenWriteOffInvocation();
+        when(meterRegistryProvider.getObject()).thenReturn(meterRegistry);
+        when(attempt.proceed()).thenThrow(conflict());
+
+        // When
+        TransactionConflictException exception = assertThrows(
+                TransactionConflictException.class,
+                () -> underTest.invoke(invocation)
+        );
+
+        // Then
+        assertThat(exception).hasMessage("The card is being changed by another operation, try again later.");
+        assertThat(exception).hasCauseInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(meterRegistry.counter("payment.optimistic.retries", "operation", "writeOff").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("payment.optimistic.conflicts", "operation", "writeOff").count()).isEqualTo(1);
+
+        verify(attempt, times(3)).proceed();
+    }
+
+    @Test
+    void invoke_whenOtherExceptionThrown_shouldNotRetry() throws Throwable {
+        // Given
+        givenWriteOffInvocation();
+        when(attempt.proceed()).thenThrow(new TransactionDeclinedException("The card is not valid."));
+
+        // When
+        assertThrows(TransactionDeclinedException.class, () -> underTest.invoke(invocation));
+
+        // Then
+        verify(attempt).proceed();
+        verifyNoInteractions(meterRegistryProvider);
+    }
+
+    @Test
+    void backoff_shouldNotExceedExponentialBoundAndMaxBackoff() {
+        // Given
+        OptimisticRetryInterceptor interceptor = new OptimisticRetryInterceptor(meterRegistryProvider, 10, 10, 50);
+
+        // When // Then
+        for(int i = 0; i < 100; i++) {
+            assertThat(interceptor.backoff(1)).isBetween(0L, 10L);
+            assertThat(interceptor.backoff(2)).isBetween(0L, 20L);
+            assertThat(interceptor.backoff(10)).isBetween(0L, 50L);
+        }
+    }
+
+    private void givenWriteOffInvocation() throws NoSuchMethodException {
+        when(invocation.getMethod()).thenReturn(TransactionService.class.getMethod("writeOff", TransactionWriteOffRequest.class, String.class));
+        when(invocation.invocableClone()).thenReturn(attempt);
+    }
+
+    private ObjectOptimisticLockingFailureException conflict() {
+        return new ObjectOptimisticLockingFailureException(Card.class, 1L);
+    }
+}
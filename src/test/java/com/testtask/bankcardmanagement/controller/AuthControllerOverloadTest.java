@@ -0,0 +1,133 @@
+package com.testtask.bankcardmanagement.controller;
+
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.model.mapper.AuthenticationMapper;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.security.PasswordHashingExecutor;
+import com.testtask.bankcardmanagement.service.security.jwt.AuthenticationService;
+import com.testtask.bankcardmanagement.service.security.jwt.JwtService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Drives the login through {@link AuthController}, {@link PasswordHashingExecutor} and {@link AuthenticationService}
+ * with the real BCrypt check: with one hashing thread and a queue of one request, the third concurrent login
+ * is rejected at once with 503 and the accepted logins are still answered
+ */
+@ExtendWith(MockitoExtension.class)
+class AuthControllerOverloadTest {
+    private static final String EMAIL = "user@test.com";
+    private static final String PASSWORD = "password";
+
+    @Mock private UserRepository userRepository;
+    @Mock private JwtService jwtService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch hashingStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseHashing = new CountDownLatch(1);
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+        User user = new User(1L, EMAIL, passwordEncoder.encode(PASSWORD), UserRole.USER, null, null);
+
+        // The first login holds the only hashing thread until it is released
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
+        authenticationProvider.setUserDetailsService(email -> {
+            hashingStarted.countDown();
+            await(releaseHashing);
+            return user;
+        });
+
+        AuthenticationService authenticationService = new AuthenticationService(
+                userRepository, passwordEncoder, jwtService, new AuthenticationMapper(), new ProviderManager(authenticationProvider));
+        passwordHashingExecutor = new PasswordHashingExecutor(meterRegistry, 1, 1);
+        mockMvc = MockMvcBuilders.standaloneSetup(new AuthController(authenticationService, passwordHashingExecutor))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(jwtService.generateToken(user)).thenReturn("token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseHashing.countDown();
+        passwordHashingExecutor.shutdown();
+    }
+
+    @Test
+    void authenticate_whenHashingThreadBusyAndQueueFull_shouldRejectWith503() throws Exception {
+        // Given
+        MvcResult running = mockMvc.perform(login())
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(hashingStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        MvcResult queued = mockMvc.perform(login())
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // When / Then
+        mockMvc.perform(login())
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(content().string("Too many authentication requests, try again later."));
+        assertThat(meterRegistry.counter("auth.hashing.rejected").count()).isEqualTo(1);
+
+        releaseHashing.countDown();
+        mockMvc.perform(asyncDispatch(running))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("token"));
+        mockMvc.perform(asyncDispatch(queued))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("token"));
+    }
+
+    private MockHttpServletRequestBuilder login() {
+        return post("/api/v1/auth/authenticate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + EMAIL + "\", \"password\": \"" + PASSWORD + "\"}");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
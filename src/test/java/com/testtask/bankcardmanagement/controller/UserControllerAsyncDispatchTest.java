@@ -0,0 +1,191 @@
+package com.testtask.bankcardmanagement.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.testtask.bankcardmanagement.AbstractIntegrationTest;
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.TransactionRepository;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.security.jwt.JwtService;
+import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the endpoints completed by an async dispatch through the whole filter chain with a real JWT:
+ * the dispatch must be authenticated like the request that started it
+ */
+@AutoConfigureMockMvc
+class UserControllerAsyncDispatchTest extends AbstractIntegrationTest {
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtService jwtService;
+    @Autowired private TransactionService transactionService;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private AESEncryption aesEncryption;
+    @Autowired private HMACHashing hmacHashing;
+
+    private User user;
+    private String cardNumber;
+    private Long cardId;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(null, UUID.randomUUID() + "@test.com", "password", UserRole.USER, null, null));
+        // The card hash is unique, every test gets its own number
+        cardNumber = String.format("4444%012d", ThreadLocalRandom.current().nextLong(1_000_000_000_000L));
+        cardId = createCard(new BigDecimal("100.00"));
+        token = "Bearer " + jwtService.generateToken(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void exportTransactionsByCard_whenAuthenticated_shouldStreamNdjsonAfterAsyncDispatch() throws Exception {
+        // Given
+        writeOff("10.00", "Coffee");
+        writeOff("20.00", "Books");
+        String expectedBody = expectedHistory().stream()
+                .map(this::toJson)
+                .reduce("", (body, line) -> body + line + "\n");
+
+        // When
+        MvcResult started = mockMvc.perform(get("/api/v1/user/export-transactions-by-user-card/{cardId}", cardId)
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(expectedBody));
+        assertThat(expectedBody.lines()).hasSize(2);
+    }
+
+    @Test
+    void exportTransactionsByCard_whenAuthenticated_shouldStreamCsvAfterAsyncDispatch() throws Exception {
+        // Given
+        writeOff("10.00", "Coffee, milk");
+        TransactionHistoryItem row = expectedHistory().get(0);
+        String expectedBody = "id,type,amount,target_card,datetime,description\n"
+                + row.id() + ",WRITE_OFF,10.00,," + row.datetime() + ",\"Coffee, milk\"\n";
+
+        // When
+        MvcResult started = mockMvc.perform(get("/api/v1/user/export-transactions-by-user-card/{cardId}", cardId)
+                        .param("format", "CSV")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string(expectedBody));
+    }
+
+    @Test
+    void writeOff_whenGroupCommitDisabled_shouldReturnResponseAfterAsyncDispatch() throws Exception {
+        // When
+        MvcResult started = mockMvc.perform(post("/api/v1/user/write-off")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromCardNumber\": \"" + cardNumber + "\", \"amount\": 10.00}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amount").value(10.00))
+                .andExpect(jsonPath("$.type").value("WRITE_OFF"));
+    }
+
+    private void writeOff(String amount, String description) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        try {
+            transactionService.writeOff(new TransactionWriteOffRequest(cardNumber, new BigDecimal(amount), description), null);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private List<TransactionHistoryItem> expectedHistory() {
+        return transactionTemplate.execute(status -> {
+            try (Stream<TransactionHistoryItem> rows = transactionRepository.streamHistoryByCard(cardId, null, null, null)) {
+                return rows.toList();
+            }
+        });
+    }
+
+    private String toJson(TransactionHistoryItem row) {
+        try {
+            return objectMapper.writeValueAsString(row);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Long createCard(BigDecimal balance) {
+        Card card = new Card();
+        card.setEncryptedNumber(aesEncryption.encrypt(cardNumber));
+        card.setCardHash(hmacHashing.hash(cardNumber));
+        card.setLastFourDigits(cardNumber.substring(12));
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(balance);
+        card.setLimits(new ArrayList<>(List.of(new Limit(null, card, LimitType.NO_LIMIT, null))));
+
+        return cardRepository.save(card).getId();
+    }
+}
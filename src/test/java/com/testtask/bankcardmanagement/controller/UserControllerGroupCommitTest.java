@@ -0,0 +1,115 @@
+package com.testtask.bankcardmanagement.controller;
+
+import com.testtask.bankcardmanagement.AbstractIntegrationTest;
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.security.jwt.JwtService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the write-off applied by the group commit through the whole filter chain with a real JWT:
+ * the response is written in an async dispatch, which must be authenticated like the request that started it
+ */
+@AutoConfigureMockMvc
+@TestPropertySource(properties = "my.payment.group_commit.enabled=true")
+class UserControllerGroupCommitTest extends AbstractIntegrationTest {
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtService jwtService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private AESEncryption aesEncryption;
+    @Autowired private HMACHashing hmacHashing;
+
+    private User user;
+    private String cardNumber;
+    private Long cardId;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(null, UUID.randomUUID() + "@test.com", "password", UserRole.USER, null, null));
+        // The card hash is unique, every test gets its own number
+        cardNumber = String.format("5555%012d", ThreadLocalRandom.current().nextLong(1_000_000_000_000L));
+        cardId = createCard(new BigDecimal("100.00"));
+        token = "Bearer " + jwtService.generateToken(user);
+    }
+
+    @Test
+    void writeOff_whenAuthenticated_shouldReturnResponseAfterAsyncDispatch() throws Exception {
+        // When
+        MvcResult started = mockMvc.perform(post("/api/v1/user/write-off")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromCardNumber\": \"" + cardNumber + "\", \"amount\": 10.00}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amount").value(10.00))
+                .andExpect(jsonPath("$.type").value("WRITE_OFF"));
+        assertThat(cardRepository.findById(cardId).orElseThrow().getBalance()).isEqualByComparingTo("90.00");
+    }
+
+    @Test
+    void writeOff_whenIdempotencyKeyGiven_shouldReturnResponseAfterAsyncDispatch() throws Exception {
+        // When
+        MvcResult started = mockMvc.perform(post("/api/v1/user/write-off")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .header("Idempotency-Key", UUID.randomUUID().toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromCardNumber\": \"" + cardNumber + "\", \"amount\": 10.00}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amount").value(10.00));
+    }
+
+    private Long createCard(BigDecimal balance) {
+        Card card = new Card();
+        card.setEncryptedNumber(aesEncryption.encrypt(cardNumber));
+        card.setCardHash(hmacHashing.hash(cardNumber));
+        card.setLastFourDigits(cardNumber.substring(12));
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(balance);
+        card.setLimits(new ArrayList<>(List.of(new Limit(null, card, LimitType.NO_LIMIT, null))));
+
+        return cardRepository.save(card).getId();
+    }
+}
@@ -0,0 +1,81 @@
+package com.testtask.bankcardmanagement.encrypt;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of card number encryption: the previous implementation (new Cipher and SecureRandom on every call)
+ * against {@link AESEncryption} with pooled ciphers.
+ * Run with {@code ./mvnw -P benchmark test-compile exec:exec}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AESEncryptionBenchmark {
+    private static final String KEY = "0123456789abcdef0123456789abcdef";
+    private static final String CARD_NUMBER = "1234123412341234";
+
+    private AESEncryption aesEncryption;
+    private SecretKeySpec secretKeySpec;
+    private String encryptedNumber;
+    private byte[] encryptedBytes;
+
+    @Setup
+    public void setUp() {
+        aesEncryption = new AESEncryption(KEY);
+        secretKeySpec = new SecretKeySpec(KEY.getBytes(), "AES");
+        encryptedNumber = aesEncryption.encrypt(CARD_NUMBER);
+        encryptedBytes = aesEncryption.encrypt(CARD_NUMBER.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String encryptBefore() throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(CARD_NUMBER.getBytes());
+        byte[] concatenated = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, concatenated, 0, iv.length);
+        System.arraycopy(encrypted, 0, concatenated, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(concatenated);
+    }
+
+    @Benchmark
+    public String encryptAfter() {
+        return aesEncryption.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decryptBefore() throws Exception {
+        byte[] data = Base64.getDecoder().decode(encryptedNumber);
+        byte[] iv = Arrays.copyOfRange(data, 0, 12);
+        byte[] encrypted = Arrays.copyOfRange(data, 12, data.length);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(encrypted));
+    }
+
+    @Benchmark
+    public String decryptAfter() {
+        return aesEncryption.decrypt(encryptedNumber);
+    }
+
+    @Benchmark
+    public void decryptBytesAfter(Blackhole blackhole) {
+        blackhole.consume(aesEncryption.decrypt(encryptedBytes));
+    }
+}
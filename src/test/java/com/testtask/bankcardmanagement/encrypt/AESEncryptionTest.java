@@ -0,0 +1,70 @@
+package com.testtask.bankcardmanagement.encrypt;
+
+import com.testtask.bankcardmanagement.exception.encryption.AESEncryptionException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AESEncryptionTest {
+    private static final String CARD_NUMBER = "1234123412341234";
+
+    private final AESEncryption underTest = new AESEncryption("0123456789abcdef0123456789abcdef");
+
+    @Test
+    void encryptBytes_shouldBeDecryptedToSameBytes() {
+        // Given
+        byte[] plain = CARD_NUMBER.getBytes(StandardCharsets.UTF_8);
+
+        // When
+        byte[] encrypted = underTest.encrypt(plain);
+        byte[] decrypted = underTest.decrypt(encrypted);
+
+        // Then
+        assertThat(decrypted).isEqualTo(plain);
+        // IV (12 bytes) + data + GCM tag (16 bytes)
+        assertThat(encrypted).hasSize(12 + plain.length + 16);
+    }
+
+    @Test
+    void encryptBytes_shouldUseNewIvForEveryCall() {
+        // Given
+        byte[] plain = CARD_NUMBER.getBytes(StandardCharsets.UTF_8);
+
+        // When
+        byte[] first = underTest.encrypt(plain);
+        byte[] second = underTest.encrypt(plain);
+
+        // Then
+        assertThat(Arrays.copyOfRange(first, 0, 12)).isNotEqualTo(Arrays.copyOfRange(second, 0, 12));
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    void encryptBytes_shouldBeCompatibleWithStoredStringFormat() {
+        // When
+        byte[] encrypted = underTest.encrypt(CARD_NUMBER.getBytes(StandardCharsets.UTF_8));
+        String storedNumber = underTest.encrypt(CARD_NUMBER);
+
+        // Then
+        assertThat(underTest.decrypt(Base64.getEncoder().encodeToString(encrypted))).isEqualTo(CARD_NUMBER);
+        assertThat(new String(underTest.decrypt(Base64.getDecoder().decode(storedNumber)), StandardCharsets.UTF_8))
+                .isEqualTo(CARD_NUMBER);
+    }
+
+    @Test
+    void decryptBytes_whenDataTampered_shouldThrowAESEncryptionException() {
+        // Given
+        byte[] encrypted = underTest.encrypt(CARD_NUMBER.getBytes(StandardCharsets.UTF_8));
+        encrypted[encrypted.length - 1] ^= 1;
+
+        // When / Then
+        assertThrows(AESEncryptionException.class, () -> underTest.decrypt(encrypted));
+        // The cipher that failed is not returned to the pool, the next call still works
+        assertThat(underTest.decrypt(underTest.encrypt(CARD_NUMBER))).isEqualTo(CARD_NUMBER);
+    }
+}
@@ -0,0 +1,80 @@
+package com.testtask.bankcardmanagement.job;
+
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardBackfillJobTest {
+    private static final String CARD_NUMBER = "1111222233334444";
+
+    @Mock private CardRepository cardRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final AESEncryption aesEncryption = new AESEncryption("0123456789abcdef0123456789abcdef");
+    private final HMACHashing hmacHashing = new HMACHashing("test-hash-key");
+    private CardBackfillJob underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CardBackfillJob(cardRepository, aesEncryption, hmacHashing, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(underTest, "batchSize", 2);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void backfill_whenCardDuplicatesAnotherCard_shouldMarkHashConflictInsteadOfHash() {
+        // Given
+        Card unique = card(1L);
+        Card duplicate = card(2L);
+        Card duplicateReloaded = card(2L);
+        when(cardRepository.findIdsToBackfill(0L, PageRequest.of(0, 2))).thenReturn(List.of(1L, 2L));
+        when(cardRepository.findIdsToBackfill(2L, PageRequest.of(0, 2))).thenReturn(List.of());
+        when(cardRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(card(1L), card(2L)));
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(unique));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(duplicate), Optional.of(duplicateReloaded));
+        // The batch and the single duplicate violate the unique constraint on commit
+        doThrow(new DataIntegrityViolationException(Card.CARD_HASH_CONSTRAINT))
+                .doNothing()
+                .doThrow(new DataIntegrityViolationException(Card.CARD_HASH_CONSTRAINT))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        // When
+        int updated = underTest.backfill();
+
+        // Then
+        assertThat(updated).isEqualTo(1);
+        assertThat(unique.getCardHash()).isEqualTo(hmacHashing.hash(CARD_NUMBER));
+        assertThat(unique.isHashConflict()).isFalse();
+        assertThat(duplicateReloaded.getCardHash()).isNull();
+        assertThat(duplicateReloaded.getLastFourDigits()).isEqualTo("4444");
+        assertThat(duplicateReloaded.isHashConflict()).isTrue();
+    }
+
+    private Card card(Long id) {
+        Card card = new Card();
+        card.setId(id);
+        card.setEncryptedNumber(aesEncryption.encrypt(CARD_NUMBER));
+        return card;
+    }
+}
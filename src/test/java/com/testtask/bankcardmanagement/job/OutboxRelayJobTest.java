@@ -0,0 +1,91 @@
+package com.testtask.bankcardmanagement.job;
+
+import com.testtask.bankcardmanagement.model.OutboxEvent;
+import com.testtask.bankcardmanagement.repository.OutboxEventRepository;
+import com.testtask.bankcardmanagement.service.outbox.OutboxSink;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayJobTest {
+    @Mock private OutboxEventRepository outboxEventRepository;
+    @Mock private OutboxSink outboxSink;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboxRelayJob underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new OutboxRelayJob(outboxEventRepository, outboxSink, transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(underTest, "batchSize", 2);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void relay_whenFullBatch_shouldPublishInIdOrderUntilBatchIsNotFull() {
+        // Given
+        List<OutboxEvent> firstBatch = List.of(event(1L), event(2L));
+        List<OutboxEvent> secondBatch = List.of(event(3L));
+        when(outboxEventRepository.findUnpublishedForUpdate(PageRequest.of(0, 2)))
+                .thenReturn(firstBatch)
+                .thenReturn(secondBatch);
+        when(outboxEventRepository.findOldestUnpublishedCreatedAt()).thenReturn(Optional.empty());
+
+        // When
+        int relayed = underTest.relay();
+
+        // Then
+        assertThat(relayed).isEqualTo(3);
+        assertThat(meterRegistry.get("outbox.published").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("outbox.lag.seconds").gauge().value()).isZero();
+
+        InOrder inOrder = inOrder(outboxSink, outboxEventRepository);
+        inOrder.verify(outboxSink).publish(firstBatch);
+        inOrder.verify(outboxEventRepository).markPublished(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        inOrder.verify(outboxSink).publish(secondBatch);
+        inOrder.verify(outboxEventRepository).markPublished(eq(List.of(3L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void relay_whenSinkFails_shouldNotMarkEventsPublishedAndReportLag() {
+        // Given
+        List<OutboxEvent> batch = List.of(event(1L));
+        when(outboxEventRepository.findUnpublishedForUpdate(PageRequest.of(0, 2))).thenReturn(batch);
+        doThrow(new IllegalStateException("Sink is not available")).when(outboxSink).publish(batch);
+        when(outboxEventRepository.findOldestUnpublishedCreatedAt()).thenReturn(Optional.of(LocalDateTime.now().minusSeconds(30)));
+
+        // When
+        int relayed = underTest.relay();
+
+        // Then
+        assertThat(relayed).isZero();
+        assertThat(meterRegistry.get("outbox.lag.seconds").gauge().value()).isGreaterThanOrEqualTo(30);
+
+        verify(outboxEventRepository, never()).markPublished(any(), any());
+        verify(transactionManager).rollback(any());
+    }
+
+    private OutboxEvent event(Long id) {
+        return new OutboxEvent(id, 1L, "TRANSACTION_POSTED", "{}", LocalDateTime.now(), null);
+    }
+}
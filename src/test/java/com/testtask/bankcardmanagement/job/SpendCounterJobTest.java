@@ -0,0 +1,100 @@
+package com.testtask.bankcardmanagement.job;
+
+import com.testtask.bankcardmanagement.model.CardSpendCounter;
+import com.testtask.bankcardmanagement.model.CardSpendCounterId;
+import com.testtask.bankcardmanagement.model.dto.limit.CardSpending;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import com.testtask.bankcardmanagement.repository.CardSpendCounterRepository;
+import com.testtask.bankcardmanagement.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpendCounterJobTest {
+    @Mock private CardSpendCounterRepository cardSpendCounterRepository;
+    @Mock private TransactionRepository transactionRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final LocalDate today = LocalDate.now();
+    private final LocalDate startThisMonth = today.withDayOfMonth(1);
+    private SpendCounterJob underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new SpendCounterJob(cardSpendCounterRepository, transactionRepository, new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    void rebuild_whenCountersTableEmpty_shouldAddCountersByDifferenceWithoutDeleting() {
+        // Given
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(cardSpendCounterRepository.count()).thenReturn(0L);
+        when(transactionRepository.sumAmountByTypeForDayAndMonthGroupByCard(eq(TransactionType.WRITE_OFF), any(), any(), any(), any()))
+                .thenReturn(List.of(new CardSpending(1L, new BigDecimal("10.00"), new BigDecimal("30.00"))));
+        when(cardSpendCounterRepository.findAllByPeriodStartIn(anyList())).thenReturn(List.of());
+
+        // When
+        int counters = underTest.rebuild();
+
+        // Then
+        assertThat(counters).isEqualTo(2);
+
+        verify(cardSpendCounterRepository).addAmount(1L, "DAY", today, new BigDecimal("10.00"));
+        verify(cardSpendCounterRepository).addAmount(1L, "MONTH", startThisMonth, new BigDecimal("30.00"));
+        verify(cardSpendCounterRepository, never()).deleteAllInBatch();
+    }
+
+    @Test
+    void rebuild_whenCountersExist_shouldNotTouchCounters() {
+        // Given
+        when(cardSpendCounterRepository.count()).thenReturn(5L);
+
+        // When
+        int counters = underTest.rebuild();
+
+        // Then
+        assertThat(counters).isZero();
+
+        verify(cardSpendCounterRepository, never()).addAmount(any(), any(), any(), any());
+        verifyNoInteractions(transactionRepository, transactionManager);
+    }
+
+    @Test
+    void checkConsistency_whenRepairDisabled_shouldOnlyCountMismatches() {
+        // Given
+        ReflectionTestUtils.setField(underTest, "repair", false);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(transactionRepository.sumAmountByTypeForDayAndMonthGroupByCard(eq(TransactionType.WRITE_OFF), any(), any(), any(), any()))
+                .thenReturn(List.of(new CardSpending(1L, new BigDecimal("10.00"), new BigDecimal("30.00"))));
+        when(cardSpendCounterRepository.findAllByPeriodStartIn(anyList())).thenReturn(List.of(
+                new CardSpendCounter(new CardSpendCounterId(1L, SpendPeriodType.DAY, today), new BigDecimal("10.00")),
+                new CardSpendCounter(new CardSpendCounterId(1L, SpendPeriodType.MONTH, startThisMonth), new BigDecimal("20.00"))
+        ));
+
+        // When
+        int mismatches = underTest.checkConsistency();
+
+        // Then
+        assertThat(mismatches).isEqualTo(1);
+
+        verify(cardSpendCounterRepository, never()).addAmount(any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,47 @@
+package com.testtask.bankcardmanagement.model.mapper;
+
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardMapperTest {
+    private static final String CARD_NUMBER = "1111222233334444";
+
+    private final AESEncryption aesEncryption = new AESEncryption("0123456789abcdef0123456789abcdef");
+    private final CardMapper underTest = new CardMapper(aesEncryption, new UserMapper(), new LimitMapper());
+
+    @Test
+    void toCardResponse_whenLastFourDigitsStored_shouldMaskThem() {
+        // Given
+        Card card = card();
+        card.setLastFourDigits("4444");
+        // A number that cannot be decrypted shows the stored digits are used
+        card.setEncryptedNumber("not-encrypted");
+
+        // When / Then
+        assertThat(underTest.toCardResponse(card).maskedNumber()).isEqualTo("**** **** **** 4444");
+    }
+
+    @Test
+    void toCardResponse_whenLastFourDigitsNotBackfilled_shouldMaskDecryptedNumber() {
+        // Given
+        Card card = card();
+        card.setEncryptedNumber(aesEncryption.encrypt(CARD_NUMBER));
+
+        // When / Then
+        assertThat(underTest.toCardResponse(card).maskedNumber()).isEqualTo("**** **** **** 4444");
+    }
+
+    private Card card() {
+        Card card = new Card();
+        card.setUser(new User(1L, "user@test.com", "password", UserRole.USER, null, null));
+        card.setLimits(List.of());
+        return card;
+    }
+}
@@ -0,0 +1,172 @@
+package com.testtask.bankcardmanagement.repository;
+
+import com.testtask.bankcardmanagement.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks by EXPLAIN that every filter and sort combination of the card and transaction listings
+ * (CardSpecification, TransactionSpecification, SORTABLE_CARD_FIELDS, SORTABLE_TRANSACTION_FIELDS)
+ * is served by an index and not by a full table or index scan.
+ * The queries repeat the SQL generated by Hibernate for the specifications
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListingIndexesExplainTest extends AbstractIntegrationTest {
+    private static final int USERS = 50;
+    private static final int CARDS_PER_USER = 10;
+    private static final int TRANSACTIONS_PER_CARD = 500;
+    private static final LocalDateTime FIRST_TRANSACTION = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private String email;
+    private long ownerId;
+    private long cardId;
+
+    /**
+     * The optimizer chooses a full scan for tiny tables, so the tables are filled with enough rows
+     * and statistics are updated before EXPLAIN
+     */
+    @BeforeAll
+    void fillTables() {
+        String prefix = UUID.randomUUID().toString();
+        List<Object[]> users = new ArrayList<>();
+        for(int i = 0; i < USERS; i++)
+            users.add(new Object[] {prefix + "-" + i + "@test.com"});
+        jdbcTemplate.batchUpdate("INSERT INTO users (email, password, role) VALUES (?, 'password', 'USER')", users);
+
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM users WHERE email LIKE ? ORDER BY id", Long.class, prefix + "-%");
+        ownerId = userIds.get(0);
+        email = jdbcTemplate.queryForObject("SELECT email FROM users WHERE id = ?", String.class, ownerId);
+
+        // Most cards are active, the admin looks for the few blocked ones
+        List<Object[]> cards = new ArrayList<>();
+        for(int i = 0; i < USERS * CARDS_PER_USER; i++) {
+            cards.add(new Object[] {
+                    userIds.get(i / CARDS_PER_USER),
+                    i % 50 == 0 ? "BLOCKED" : "ACTIVE",
+                    prefix + "-" + i
+            });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cards (encrypted_number, expiration_date, owner_id, status, balance, card_hash, last_four_digits) " +
+                "VALUES ('encrypted', '2030-01-01', ?, ?, 0, ?, '0000')", cards);
+
+        List<Long> cardIds = jdbcTemplate.queryForList("SELECT id FROM cards WHERE owner_id = ? ORDER BY id", Long.class, ownerId);
+        cardId = cardIds.get(0);
+
+        long transactionId = reserveTransactionIds(cardIds.size() * TRANSACTIONS_PER_CARD);
+        List<Object[]> transactions = new ArrayList<>();
+        for(Long card: cardIds) {
+            for(int i = 0; i < TRANSACTIONS_PER_CARD; i++) {
+                transactions.add(new Object[] {
+                        transactionId++,
+                        i + 1,
+                        i % 2 == 0 ? "WRITE_OFF" : "REPLENISHMENT",
+                        card,
+                        Timestamp.valueOf(FIRST_TRANSACTION.plusHours(i))
+                });
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, amount, type, card_id, transaction_date) VALUES (?, ?, ?, ?, ?)", transactions);
+
+        jdbcTemplate.execute("ANALYZE TABLE users, cards, transactions");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("listingQueries")
+    void listingQuery_shouldNotScanWholeTable(String name, String sql, List<Object> params) {
+        // When
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, params.toArray());
+
+        // Then
+        assertThat(plan).allSatisfy(row -> assertThat(row.get("type"))
+                .as("%s: %s", name, row)
+                .isNotIn("ALL", "index"));
+    }
+
+    Stream<Arguments> listingQueries() {
+        Timestamp from = Timestamp.valueOf(FIRST_TRANSACTION.plusDays(3));
+        Timestamp to = Timestamp.valueOf(FIRST_TRANSACTION.plusDays(5));
+
+        return Stream.of(
+                // Cards, admin: status filter, all sortable fields
+                query("cards by status sorted by id",
+                        "SELECT c.* FROM cards c WHERE c.status = ? ORDER BY c.id LIMIT 10", "BLOCKED"),
+                query("cards by status sorted by status",
+                        "SELECT c.* FROM cards c WHERE c.status = ? ORDER BY c.status LIMIT 10", "BLOCKED"),
+                query("cards by status sorted by user email",
+                        "SELECT c.* FROM cards c JOIN users u ON u.id = c.owner_id WHERE c.status = ? ORDER BY u.email LIMIT 10", "BLOCKED"),
+                // Cards, admin and user: email filter
+                query("cards by email sorted by id",
+                        "SELECT c.* FROM cards c JOIN users u ON u.id = c.owner_id WHERE u.email = ? ORDER BY c.id LIMIT 10", email),
+                query("cards by email sorted by status",
+                        "SELECT c.* FROM cards c JOIN users u ON u.id = c.owner_id WHERE u.email = ? ORDER BY c.status LIMIT 10", email),
+                query("cards by email and status",
+                        "SELECT c.* FROM cards c JOIN users u ON u.id = c.owner_id WHERE u.email = ? AND c.status = ? ORDER BY c.id LIMIT 10",
+                        email, "ACTIVE"),
+                query("count cards by email",
+                        "SELECT COUNT(c.id) FROM cards c JOIN users u ON u.id = c.owner_id WHERE u.email = ?", email),
+
+                // Transactions: card filter, all sortable fields
+                query("transactions by card sorted by id",
+                        "SELECT t.* FROM transactions t WHERE t.card_id = ? ORDER BY t.id LIMIT 10", cardId),
+                query("transactions by card sorted by type",
+                        "SELECT t.* FROM transactions t WHERE t.card_id = ? ORDER BY t.type LIMIT 10", cardId),
+                query("transactions by card sorted by amount",
+                        "SELECT t.* FROM transactions t WHERE t.card_id = ? ORDER BY t.amount LIMIT 10", cardId),
+                // Transactions: type and date range filters
+                query("transactions by card and type",
+                        "SELECT t.* FROM transactions t WHERE t.card_id = ? AND t.type = ? ORDER BY t.type LIMIT 10",
+                        cardId, "WRITE_OFF"),
+                query("transactions by card and date range",
+                        "SELECT t.* FROM transactions t WHERE t.card_id = ? AND t.transaction_date > ? AND t.transaction_date < ? " +
+                                "ORDER BY t.id LIMIT 10", cardId, from, to),
+                query("transactions by card, type and date range",
+                        "SELECT t.* FROM transactions t WHERE t.card_id = ? AND t.type = ? " +
+                                "AND t.transaction_date > ? AND t.transaction_date < ? ORDER BY t.amount LIMIT 10",
+                        cardId, "WRITE_OFF", from, to),
+                query("count transactions by card, type and date range",
+                        "SELECT COUNT(t.id) FROM transactions t WHERE t.card_id = ? AND t.type = ? " +
+                                "AND t.transaction_date > ? AND t.transaction_date < ?", cardId, "WRITE_OFF", from, to),
+                // Transactions of the current user: ownership check joins the card
+                query("transactions by card of the owner",
+                        "SELECT t.* FROM transactions t JOIN cards c ON c.id = t.card_id WHERE t.card_id = ? AND c.owner_id = ? " +
+                                "ORDER BY t.id LIMIT 10", cardId, ownerId)
+        );
+    }
+
+    /**
+     * Transaction ids are allocated by the application from id_generators, so the test reserves a block there
+     * instead of using auto increment (which could take ids of a block already allocated by the application)
+     * @return first reserved id
+     */
+    private long reserveTransactionIds(int count) {
+        return transactionTemplate.execute(status -> {
+            Long next = jdbcTemplate.queryForObject(
+                    "SELECT next_val FROM id_generators WHERE sequence_name = 'transactions' FOR UPDATE", Long.class);
+            jdbcTemplate.update("UPDATE id_generators SET next_val = ? WHERE sequence_name = 'transactions'", next + count);
+            return next;
+        });
+    }
+
+    private static Arguments query(String name, String sql, Object... params) {
+        return Arguments.of(name, sql, List.of(params));
+    }
+}
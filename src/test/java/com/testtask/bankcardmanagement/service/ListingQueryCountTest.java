@@ -0,0 +1,165 @@
+package com.testtask.bankcardmanagement.service;
+
+import com.testtask.bankcardmanagement.AbstractIntegrationTest;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.Transaction;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.card.CardParamFilter;
+import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
+import com.testtask.bankcardmanagement.model.dto.page.CursorPage;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.TransactionRepository;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.card.CardService;
+import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks by Hibernate statistics that the number of queries of a listing page does not depend on the page size:
+ * owners and cards are loaded by the page query, limits of all cards of the page by one batch query
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ListingQueryCountTest extends AbstractIntegrationTest {
+    private static final int CARDS = 20;
+    private static final int TRANSACTIONS = 100;
+
+    @Autowired private CardService cardService;
+    @Autowired private TransactionService transactionService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+    private List<Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        user = createUser();
+        cards = new ArrayList<>();
+        // The first card belongs to the user, the others to different owners
+        cards.add(createCard(user, 0));
+        for(int i = 1; i < CARDS; i++)
+            cards.add(createCard(createUser(), i));
+
+        List<Transaction> transactions = new ArrayList<>();
+        for(int i = 0; i < TRANSACTIONS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(BigDecimal.ONE);
+            transaction.setType(TransactionType.WRITE_OFF);
+            transaction.setCard(cards.get(0));
+            transaction.setTransactionDate(LocalDateTime.now().minusMinutes(i));
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getAllCards_shouldLoadOwnersAndLimitsOfPageWithoutQueryPerCard() {
+        // When
+        Slice<CardResponse> page = cardService.getAllCards(
+                new CardParamFilter(null, null), 0, CARDS, List.of("id"), "DESC", CountMode.EXACT);
+
+        // Then
+        assertThat(page.getContent()).hasSize(CARDS);
+        // page + count + limits
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void getAllCards_whenCountModeSlice_shouldLoadOwnersAndLimitsOfPageWithoutQueryPerCard() {
+        // When
+        Slice<CardResponse> page = cardService.getAllCards(
+                new CardParamFilter(CardStatus.ACTIVE, null), 0, CARDS, List.of("id"), "DESC", CountMode.SLICE);
+
+        // Then
+        assertThat(page.getContent()).hasSize(CARDS);
+        // page + limits
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void getTransactionsByUserCard_shouldLoadCardOwnerAndLimitsOnce() {
+        // When
+        Slice<TransactionResponse> page = transactionService.getTransactionsByUserCard(
+                cards.get(0).getId(), new TransactionParamFilter(null, null, null, null, false),
+                0, TRANSACTIONS, List.of("id"), "ASC", CountMode.EXACT);
+
+        // Then
+        assertThat(page.getContent()).hasSize(TRANSACTIONS);
+        // ownership + card existence + page + count + limits
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(5);
+    }
+
+    @Test
+    void scrollTransactionsByCard_shouldLoadCardOwnerAndLimitsOnce() {
+        // When
+        CursorPage<TransactionResponse> page = transactionService.scrollTransactionsByCard(
+                cards.get(0).getId(), new TransactionParamFilter(null, null, null, null, false), null, TRANSACTIONS, "DESC");
+
+        // Then
+        assertThat(page.content()).hasSize(TRANSACTIONS);
+        // card existence + page + limits
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    private User createUser() {
+        return userRepository.save(new User(null, UUID.randomUUID() + "@test.com", "password", UserRole.USER, null, null));
+    }
+
+    private Card createCard(User owner, int number) {
+        Card card = new Card();
+        card.setEncryptedNumber("encrypted");
+        card.setCardHash(UUID.randomUUID().toString());
+        card.setLastFourDigits(String.format("%04d", number));
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setUser(owner);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(BigDecimal.ZERO);
+        card.setLimits(new ArrayList<>(List.of(
+                new Limit(null, card, LimitType.DAILY, new BigDecimal("100.00")),
+                new Limit(null, card, LimitType.MONTHLY, new BigDecimal("1000.00"))
+        )));
+
+        return cardRepository.save(card);
+    }
+}
@@ -1,6 +1,7 @@
 package com.testtask.bankcardmanagement.service.card.impl;
 
 import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
 import com.testtask.bankcardmanagement.exception.card.CardBalanceException;
 import com.testtask.bankcardmanagement.exception.card.CardDuplicateException;
 import com.testtask.bankcardmanagement.exception.card.CardNotAvailableException;
@@ -18,11 +19,14 @@ import com.testtask.bankcardmanagement.model.dto.limit.LimitResponse;
 import com.testtask.bankcardmanagement.model.dto.limit.LimitUpdateRequest;
 import com.testtask.bankcardmanagement.model.dto.user.UserResponse;
 import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
 import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.LockingMode;
 import com.testtask.bankcardmanagement.model.enums.UserRole;
 import com.testtask.bankcardmanagement.model.mapper.CardMapper;
 import com.testtask.bankcardmanagement.model.mapper.LimitMapper;
 import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.SliceRepository;
 import com.testtask.bankcardmanagement.repository.UserRepository;
 import com.testtask.bankcardmanagement.service.security.SecurityUtil;
 import org.junit.jupiter.api.Test;
@@ -32,12 +36,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -51,7 +59,9 @@ import static org.mockito.Mockito.*;
 class CardServiceImplTest {
     @Mock private CardRepository cardRepository;
     @Mock private UserRepository userRepository;
+    @Mock private SliceRepository sliceRepository;
     @Mock private AESEncryption aesEncryption;
+    @Mock private HMACHashing hmacHashing;
     @Mock private CardMapper cardMapper;
     @Mock private LimitMapper limitMapper;
     @InjectMocks private CardServiceImpl underTest;
@@ -101,9 +111,8 @@ class CardServiceImplTest {
 
         when(userRepository.findUserByEmail(cardRequest.ownerEmail())).thenReturn(Optional.of(existingUser));
         when(aesEncryption.encrypt(cardRequest.cardNumber())).thenReturn(encryptedNumber);
-        when(cardRepository.findEncryptedNumberByUserId(existingUser.getId())).thenReturn(Collections.emptyList());
         when(limitMapper.toLimit(limitRequest)).thenReturn(defaultLimit);
-        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cardRepository.saveAndFlush(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(cardMapper.toCardResponse(expectedSavedCard)).thenReturn(expectedCardResponse);
 
         // When
@@ -111,16 +120,18 @@ class CardServiceImplTest {
 
         // Then
         ArgumentCaptor<Card> cardCapture = ArgumentCaptor.forClass(Card.class);
-        verify(cardRepository, times(2)).save(cardCapture.capture());
+        verify(cardRepository).saveAndFlush(cardCapture.capture());
         verify(userRepository).findUserByEmail(userEmail);
         verify(aesEncryption).encrypt(cardNumber);
         verify(limitMapper, times(1)).toLimit(limitRequest);
 
         Card savedCard = cardCapture.getValue();
         assertThat(savedCard).isEqualTo(expectedSavedCard);
+        assertThat(savedCard.getLastFourDigits()).isEqualTo("1234");
         assertThat(actualCardResponse).isEqualTo(expectedCardResponse);
 
         verify(cardMapper).toCardResponse(savedCard);
+        verify(userRepository).addCardCount(existingUser.getId(), 1);
     }
 
     @Test
@@ -164,9 +175,8 @@ class CardServiceImplTest {
 
         when(userRepository.findUserByEmail(cardRequest.ownerEmail())).thenReturn(Optional.of(existingUser));
         when(aesEncryption.encrypt(cardRequest.cardNumber())).thenReturn(encryptedNumber);
-        when(cardRepository.findEncryptedNumberByUserId(existingUser.getId())).thenReturn(Collections.emptyList());
         when(limitMapper.toLimit(limitRequest)).thenReturn(defaultLimit);
-        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cardRepository.saveAndFlush(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(cardMapper.toCardResponse(expectedSavedCard)).thenReturn(expectedCardResponse);
 
         // When
@@ -174,7 +184,7 @@ class CardServiceImplTest {
 
         // Then
         ArgumentCaptor<Card> cardCapture = ArgumentCaptor.forClass(Card.class);
-        verify(cardRepository, times(2)).save(cardCapture.capture());
+        verify(cardRepository).saveAndFlush(cardCapture.capture());
         verify(userRepository).findUserByEmail(userEmail);
         verify(aesEncryption).encrypt(cardNumber);
         verify(limitMapper, times(1)).toLimit(limitRequest);
@@ -237,10 +247,9 @@ class CardServiceImplTest {
 
         when(userRepository.findUserByEmail(cardRequest.ownerEmail())).thenReturn(Optional.of(existingUser));
         when(aesEncryption.encrypt(cardRequest.cardNumber())).thenReturn(encryptedNumber);
-        when(cardRepository.findEncryptedNumberByUserId(existingUser.getId())).thenReturn(Collections.emptyList());
         when(limitMapper.toLimit(limitRequests.get(0))).thenReturn(limits.get(0));
         when(limitMapper.toLimit(limitRequests.get(1))).thenReturn(limits.get(1));
-        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cardRepository.saveAndFlush(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(cardMapper.toCardResponse(expectedSavedCard)).thenReturn(expectedCardResponse);
 
         // When
@@ -248,7 +257,7 @@ class CardServiceImplTest {
 
         // Then
         ArgumentCaptor<Card> cardCapture = ArgumentCaptor.forClass(Card.class);
-        verify(cardRepository, times(2)).save(cardCapture.capture());
+        verify(cardRepository).saveAndFlush(cardCapture.capture());
         verify(userRepository).findUserByEmail(userEmail);
         verify(aesEncryption).encrypt(cardNumber);
         verify(limitMapper).toLimit(limitRequests.get(0));
@@ -274,11 +283,16 @@ class CardServiceImplTest {
         User existingUser = new User();
         existingUser.setId(1L);
 
-        String existEncryptedNumber = "encryptedNumber";
+        LimitRequest limitRequest = new LimitRequest(LimitType.NO_LIMIT, null);
+        DataIntegrityViolationException duplicateException = new DataIntegrityViolationException(
+                "could not execute statement",
+                new SQLException("Duplicate entry '1-cardHash' for key 'cards." + Card.CARD_HASH_CONSTRAINT + "'")
+        );
 
         when(userRepository.findUserByEmail(cardRequest.ownerEmail())).thenReturn(Optional.of(existingUser));
-        when(cardRepository.findEncryptedNumberByUserId(existingUser.getId())).thenReturn(List.of(existEncryptedNumber));
-        when(aesEncryption.decrypt(existEncryptedNumber)).thenReturn(cardRequest.cardNumber());
+        when(hmacHashing.hash(cardRequest.cardNumber())).thenReturn("cardHash");
+        when(limitMapper.toLimit(limitRequest)).thenReturn(new Limit());
+        when(cardRepository.saveAndFlush(any(Card.class))).thenThrow(duplicateException);
 
         // When
         CardDuplicateException exception = assertThrows(
@@ -287,15 +301,48 @@ class CardServiceImplTest {
         );
 
         // Then
-        verify(cardRepository).findEncryptedNumberByUserId(existingUser.getId());
-        verify(aesEncryption).decrypt(existEncryptedNumber);
+        verify(cardRepository).saveAndFlush(any(Card.class));
+        verify(aesEncryption, never()).decrypt(anyString());
         verifyNoInteractions(cardMapper);
-        verifyNoInteractions(limitMapper);
         verifyNoMoreInteractions(cardRepository);
 
         assertThat(exception).hasMessage("A card with this number already exists.");
     }
 
+    @Test
+    void createCard_whenOtherConstraintViolated_shouldRethrowException() {
+        // Given
+        CardRequest cardRequest = new CardRequest(
+                cardNumber,
+                LocalDate.now().plusYears(1),
+                userEmail,
+                Collections.emptyList()
+        );
+
+        User existingUser = new User();
+        existingUser.setId(1L);
+
+        LimitRequest limitRequest = new LimitRequest(LimitType.NO_LIMIT, null);
+        DataIntegrityViolationException foreignKeyException = new DataIntegrityViolationException(
+                "could not execute statement",
+                new SQLException("Cannot add or update a child row: a foreign key constraint fails (fk_cards_users)")
+        );
+
+        when(userRepository.findUserByEmail(cardRequest.ownerEmail())).thenReturn(Optional.of(existingUser));
+        when(limitMapper.toLimit(limitRequest)).thenReturn(new Limit());
+        when(cardRepository.saveAndFlush(any(Card.class))).thenThrow(foreignKeyException);
+
+        // When
+        DataIntegrityViolationException exception = assertThrows(
+                DataIntegrityViolationException.class,
+                () -> underTest.createCard(cardRequest)
+        );
+
+        // Then
+        assertThat(exception).isSameAs(foreignKeyException);
+        verifyNoInteractions(cardMapper);
+    }
+
     @Test
     void createCard_whenUserDoesntExist_shouldThrowUserNotFoundException() {
         // Given
@@ -352,12 +399,13 @@ class CardServiceImplTest {
         when(cardMapper.toCardResponse(card)).thenReturn(mockResponse);
 
         // When
-        Page<CardResponse> resultPage = underTest.getAllCards(
+        Page<CardResponse> resultPage = (Page<CardResponse>) underTest.getAllCards(
                 filter,
                 page,
                 size,
                 sortList,
-                sortOrder
+                sortOrder,
+                CountMode.EXACT
         );
 
         // Then
@@ -406,16 +454,18 @@ class CardServiceImplTest {
             CardResponse response2 = mock(CardResponse.class);
 
             utilities.when(SecurityUtil::getCurrentUser).thenReturn(user);
+            // EXACT: the total is the result of the count query of the repository, not the size of the page content
             when(cardRepository.findAll(any(Specification.class), any(Pageable.class)))
-                    .thenReturn(new PageImpl<>(List.of(card1, card2)));
+                    .thenReturn(new PageImpl<>(List.of(card1, card2), expectedPageable, 12));
             when(cardMapper.toCardResponse(card1)).thenReturn(response1);
             when(cardMapper.toCardResponse(card2)).thenReturn(response2);
 
             // When
-            Page<CardResponse> resultPage = underTest.getAllCardsForCurrentUser(
+            Page<CardResponse> resultPage = (Page<CardResponse>) underTest.getAllCardsForCurrentUser(
                     inputFilter,
                     page,
-                    size
+                    size,
+                    CountMode.EXACT
             );
 
             // Then
@@ -433,11 +483,78 @@ class CardServiceImplTest {
 
             assertThat(resultPage.getContent()).hasSize(2);
             assertThat(resultPage.getContent()).containsExactlyInAnyOrder(response1, response2);
-            assertThat(resultPage.getTotalElements()).isEqualTo(2);
+            assertThat(resultPage.getTotalElements()).isEqualTo(12);
+            assertThat(resultPage.getTotalPages()).isEqualTo(2);
             assertThat(resultPage.getPageable()).isEqualTo(expectedPageable);
         }
     }
 
+    @Test
+    void getAllCards_whenCountModeSlice_shouldNotCount() {
+        // Given
+        CardParamFilter filter = new CardParamFilter(CardStatus.ACTIVE, null);
+        Pageable expectedPageable = PageRequest.of(0, 1, Sort.by(Sort.Order.asc("id")));
+
+        Card card = new Card();
+        CardResponse response = mock(CardResponse.class);
+
+        when(sliceRepository.findAll(eq(Card.class), any(Specification.class), eq(expectedPageable), eq("user")))
+                .thenReturn(new SliceImpl<>(List.of(card), expectedPageable, true));
+        when(cardMapper.toCardResponse(card)).thenReturn(response);
+
+        // When
+        Slice<CardResponse> result = underTest.getAllCards(filter, 0, 1, List.of("id"), "asc", CountMode.SLICE);
+
+        // Then
+        assertThat(result).isNotInstanceOf(Page.class);
+        assertThat(result.getContent()).containsExactly(response);
+        assertThat(result.hasNext()).isTrue();
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void getAllCards_whenCountModeApproximateAndEmailFilter_shouldTakeTotalFromUserCardCounter() {
+        // Given
+        CardParamFilter filter = new CardParamFilter(null, userEmail);
+        Pageable expectedPageable = PageRequest.of(1, 2, Sort.by(Sort.Order.asc("id")));
+
+        Card card = new Card();
+        CardResponse response = mock(CardResponse.class);
+
+        when(sliceRepository.findAll(eq(Card.class), any(Specification.class), eq(expectedPageable), eq("user")))
+                .thenReturn(new SliceImpl<>(List.of(card), expectedPageable, false));
+        when(cardMapper.toCardResponse(card)).thenReturn(response);
+        when(userRepository.findCardCountByEmail(userEmail)).thenReturn(Optional.of(3L));
+
+        // When
+        Slice<CardResponse> result = underTest.getAllCards(filter, 1, 2, List.of("id"), "asc", CountMode.APPROXIMATE);
+
+        // Then
+        assertThat(result).isInstanceOf(Page.class);
+        assertThat(((Page<CardResponse>) result).getTotalElements()).isEqualTo(3);
+        assertThat(result.getContent()).containsExactly(response);
+        verify(cardRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        verify(cardRepository, never()).estimateCount();
+    }
+
+    @Test
+    void getAllCards_whenCountModeApproximateWithoutEmailFilter_shouldTakeTotalFromTableEstimate() {
+        // Given
+        CardParamFilter filter = new CardParamFilter(null, null);
+        Pageable expectedPageable = PageRequest.of(0, 10, Sort.by(Sort.Order.asc("id")));
+
+        when(sliceRepository.findAll(eq(Card.class), any(Specification.class), eq(expectedPageable), eq("user")))
+                .thenReturn(new SliceImpl<>(List.of(), expectedPageable, false));
+        when(cardRepository.estimateCount()).thenReturn(1000L);
+
+        // When
+        Slice<CardResponse> result = underTest.getAllCards(filter, 0, 10, List.of("id"), "asc", CountMode.APPROXIMATE);
+
+        // Then
+        assertThat(((Page<CardResponse>) result).getTotalElements()).isEqualTo(1000);
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     void blockCard_whenCardExist_shouldChangeCardStatusToBlock() {
         // Given
@@ -561,7 +678,10 @@ class CardServiceImplTest {
     void deleteCard_whenBalanceValid_shouldDeleteCard() {
         // Given
         Long id = 1L;
+        User owner = new User();
+        owner.setId(2L);
         Card card = new Card();
+        card.setUser(owner);
         card.setBalance(BigDecimal.ZERO);
 
         when(cardRepository.findById(id)).thenReturn(Optional.of(card));
@@ -572,6 +692,7 @@ class CardServiceImplTest {
         // Then
         verify(cardRepository).findById(id);
         verify(cardRepository).delete(card);
+        verify(userRepository).addCardCount(owner.getId(), -1);
     }
 
     @Test
@@ -823,67 +944,130 @@ class CardServiceImplTest {
     void findCardByNumber_whenCardExist_shouldReturnCard() {
         // Given
         User owner = new User();
-        String searchedCardNumber = "searchedCardNumber"; // card2
-        String notSearchedCardNumber = "notSearchedCardNumber";
+        String searchedCardNumber = "searchedCardNumber";
+        String searchedCardHash = "searchedCardHash";
 
-        Card card1 = new Card();
-        card1.setId(1L);
-        card1.setEncryptedNumber("encrypted_card1_number");
-        card1.setUser(owner);
-        Card card2 = new Card();
-        card2.setId(2L);
-        card2.setEncryptedNumber("encrypted_card2_number");
-        card2.setUser(owner);
-
-        owner.setCards(List.of(card1, card2));
+        Card card = new Card();
+        card.setId(2L);
+        card.setEncryptedNumber("encrypted_card2_number");
+        card.setCardHash(searchedCardHash);
+        card.setUser(owner);
 
-        when(cardRepository.findAllByUser(owner)).thenReturn(List.of(card1, card2));
-        when(aesEncryption.decrypt(card1.getEncryptedNumber())).thenReturn(notSearchedCardNumber);
-        when(aesEncryption.decrypt(card2.getEncryptedNumber())).thenReturn(searchedCardNumber);
+        when(hmacHashing.hash(searchedCardNumber)).thenReturn(searchedCardHash);
+        when(cardRepository.findByUserAndCardHash(owner, searchedCardHash)).thenReturn(Optional.of(card));
 
         // When
         Card actualCard = underTest.findCardByNumber(searchedCardNumber, owner);
 
         // Then
         assertThat(actualCard.getUser()).isEqualTo(owner);
-        assertThat(actualCard.getEncryptedNumber()).isEqualTo(card2.getEncryptedNumber());
+        assertThat(actualCard.getEncryptedNumber()).isEqualTo(card.getEncryptedNumber());
 
-        verify(cardRepository).findAllByUser(owner);
-        verify(aesEncryption).decrypt(card1.getEncryptedNumber());
-        verify(aesEncryption).decrypt(card2.getEncryptedNumber());
+        verify(hmacHashing).hash(searchedCardNumber);
+        verify(cardRepository).findByUserAndCardHash(owner, searchedCardHash);
+        verifyNoInteractions(aesEncryption);
     }
 
     @Test
     void findCardByNumber_whenCardDoesntExist_shouldThrowCardNotFoundException() {
         // Given
         User owner = new User();
-        String searchedCardNumber = "searchedCardNumber"; // card2
-        String notSearchedCardNumber = "notSearchedCardNumber";
+        String searchedCardNumber = "searchedCardNumber";
+        String searchedCardHash = "searchedCardHash";
+
+        when(hmacHashing.hash(searchedCardNumber)).thenReturn(searchedCardHash);
+        when(cardRepository.findByUserAndCardHash(owner, searchedCardHash)).thenReturn(Optional.empty());
+
+        // When
+        CardNotFoundException exception = assertThrows(
+                CardNotFoundException.class,
+                () -> underTest.findCardByNumber(searchedCardNumber, owner)
+        );
+
+        // Then
+        assertThat(exception).hasMessage("You don't have a card with that number - " + searchedCardNumber + ".");
+
+        verify(hmacHashing).hash(searchedCardNumber);
+        verify(cardRepository).findByUserAndCardHash(owner, searchedCardHash);
+        verifyNoInteractions(aesEncryption);
+    }
+
+    @Test
+    void findCardIdByNumber_whenCardExist_shouldReturnCardIdWithoutLoadingCard() {
+        // Given
+        User owner = new User();
+        String searchedCardNumber = "searchedCardNumber";
+        String searchedCardHash = "searchedCardHash";
+
+        when(hmacHashing.hash(searchedCardNumber)).thenReturn(searchedCardHash);
+        when(cardRepository.findIdByUserAndCardHash(owner, searchedCardHash)).thenReturn(Optional.of(2L));
+
+        // When
+        Long actualCardId = underTest.findCardIdByNumber(searchedCardNumber, owner);
+
+        // Then
+        assertThat(actualCardId).isEqualTo(2L);
+
+        verify(cardRepository).findIdByUserAndCardHash(owner, searchedCardHash);
+        verifyNoMoreInteractions(cardRepository);
+    }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void lockCards_whenCardsExist_shouldLockDistinctIdsInAscendingOrder() {
+        // Given
         Card card1 = new Card();
         card1.setId(1L);
-        card1.setEncryptedNumber("encrypted_card1_number");
-        card1.setUser(owner);
         Card card2 = new Card();
         card2.setId(2L);
-        card2.setEncryptedNumber("encrypted_card2_number");
-        card2.setUser(owner);
 
-        when(cardRepository.findAllByUser(owner)).thenReturn(List.of(card1, card2));
-        when(aesEncryption.decrypt(card1.getEncryptedNumber())).thenReturn(notSearchedCardNumber);
-        when(aesEncryption.decrypt(card2.getEncryptedNumber())).thenReturn(notSearchedCardNumber);
+        when(cardRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(card1, card2));
+
+        // When
+        List<Card> actualCards = underTest.lockCards(List.of(2L, 1L, 2L));
+
+        // Then
+        assertThat(actualCards).containsExactly(card1, card2);
+
+        ArgumentCaptor<Collection<Long>> idsCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(cardRepository).findAllByIdForUpdate(idsCaptor.capture());
+        assertThat(idsCaptor.getValue()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void lockCards_whenCardDoesntExist_shouldThrowCardNotFoundException() {
+        // Given
+        Card card1 = new Card();
+        card1.setId(1L);
+
+        when(cardRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(card1));
 
         // When
         CardNotFoundException exception = assertThrows(
                 CardNotFoundException.class,
-                () -> underTest.findCardByNumber(searchedCardNumber, owner)
+                () -> underTest.lockCards(List.of(1L, 3L))
         );
 
         // Then
-        assertThat(exception).hasMessage("You don't have a card with that number - " + searchedCardNumber + ".");
+        assertThat(exception).hasMessage("The card with such id not found.");
+    }
+
+    @Test
+    void lockCards_whenOptimisticMode_shouldLoadCardsWithoutLock() {
+        // Given
+        ReflectionTestUtils.setField(underTest, "lockingMode", LockingMode.OPTIMISTIC);
+        Card card1 = new Card();
+        card1.setId(1L);
+
+        when(cardRepository.findAllByIdInOrderByIdAsc(anyCollection())).thenReturn(List.of(card1));
+
+        // When
+        List<Card> actualCards = underTest.lockCards(List.of(1L));
+
+        // Then
+        assertThat(actualCards).containsExactly(card1);
 
-        verify(cardRepository).findAllByUser(owner);
-        verify(aesEncryption).decrypt(card1.getEncryptedNumber());
-        verify(aesEncryption).decrypt(card2.getEncryptedNumber());
+        verify(cardRepository).findAllByIdInOrderByIdAsc(anyCollection());
+        verify(cardRepository, never()).findAllByIdForUpdate(anyCollection());
     }
 }
\ No newline at end of file
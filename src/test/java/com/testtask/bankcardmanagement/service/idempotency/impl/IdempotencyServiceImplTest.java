@@ -0,0 +1,162 @@
+package com.testtask.bankcardmanagement.service.idempotency.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.testtask.bankcardmanagement.exception.transaction.IdempotencyKeyException;
+import com.testtask.bankcardmanagement.model.IdempotencyKey;
+import com.testtask.bankcardmanagement.model.IdempotencyKeyId;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import com.testtask.bankcardmanagement.repository.IdempotencyKeyRepository;
+import com.testtask.bankcardmanagement.service.security.SecurityUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+    @Mock private IdempotencyKeyRepository idempotencyKeyRepository;
+    private IdempotencyServiceImpl underTest;
+    private MockedStatic<SecurityUtil> securityUtil;
+
+    private final User user = new User(1L, "user@test.com", "password", null, null, null);
+    private final TransactionWriteOffRequest request = new TransactionWriteOffRequest("1111222233334444", BigDecimal.TEN, null);
+    private final TransactionResponse response = new TransactionResponse(
+            BigDecimal.TEN, TransactionType.WRITE_OFF, null, null, LocalDateTime.of(2025, 1, 1, 10, 0), null);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        underTest = new IdempotencyServiceImpl(idempotencyKeyRepository, objectMapper, new SimpleMeterRegistry(), 24, 100);
+        securityUtil = mockStatic(SecurityUtil.class);
+        securityUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        securityUtil.close();
+    }
+
+    @Test
+    void execute_whenKeyIsNew_shouldExecuteOperationAndStoreResponse() {
+        // Given
+        when(idempotencyKeyRepository.insertIfAbsent(eq(1L), eq("key-1"), eq("WRITE_OFF"), anyString(), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        // When
+        TransactionResponse actualResponse = execute("key-1", request);
+
+        // Then
+        assertThat(actualResponse).isSameAs(response);
+        assertThat(executions).hasValue(1);
+
+        ArgumentCaptor<String> storedResponse = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyKeyRepository).saveResponse(eq(1L), eq("key-1"), storedResponse.capture());
+        assertThat(storedResponse.getValue()).contains("\"type\":\"WRITE_OFF\"");
+    }
+
+    @Test
+    void execute_whenKeyIsCommitted_shouldReplayStoredResponseWithoutExecution() {
+        // Given
+        ArgumentCaptor<String> requestHash = ArgumentCaptor.forClass(String.class);
+        when(idempotencyKeyRepository.insertIfAbsent(eq(1L), eq("key-1"), eq("WRITE_OFF"), requestHash.capture(), any(LocalDateTime.class)))
+                .thenReturn(1)
+                .thenReturn(0);
+        ArgumentCaptor<String> storedResponse = ArgumentCaptor.forClass(String.class);
+        when(idempotencyKeyRepository.saveResponse(eq(1L), eq("key-1"), storedResponse.capture())).thenReturn(1);
+        execute("key-1", request);
+        // The first request is committed by another instance, the local cache does not have it
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        when(idempotencyKeyRepository.findById(new IdempotencyKeyId(1L, "key-1"))).thenAnswer(invocation -> Optional.of(new IdempotencyKey(
+                new IdempotencyKeyId(1L, "key-1"), "WRITE_OFF", requestHash.getValue(), storedResponse.getValue(), LocalDateTime.now())));
+
+        // When
+        TransactionResponse actualResponse = execute("key-1", request);
+
+        // Then
+        assertThat(actualResponse).isEqualTo(response);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenResponseCommitted_shouldReplayFromCacheWithoutDatabase() {
+        // Given
+        when(idempotencyKeyRepository.insertIfAbsent(eq(1L), eq("key-1"), eq("WRITE_OFF"), anyString(), any(LocalDateTime.class)))
+                .thenReturn(1);
+        execute("key-1", request);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // When
+        TransactionResponse actualResponse = execute("key-1", request);
+
+        // Then
+        assertThat(actualResponse).isEqualTo(response);
+        assertThat(executions).hasValue(1);
+
+        verify(idempotencyKeyRepository, times(1)).insertIfAbsent(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_whenKeyUsedForAnotherRequest_shouldThrowIdempotencyKeyException() {
+        // Given
+        when(idempotencyKeyRepository.insertIfAbsent(eq(1L), eq("key-1"), eq("WRITE_OFF"), anyString(), any(LocalDateTime.class)))
+                .thenReturn(1);
+        execute("key-1", request);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // When
+        IdempotencyKeyException exception = assertThrows(
+                IdempotencyKeyException.class,
+                () -> execute("key-1", new TransactionWriteOffRequest("1111222233334444", BigDecimal.ONE, null))
+        );
+
+        // Then
+        assertThat(exception).hasMessage("Idempotency key was already used for another request.");
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenKeyTooLong_shouldThrowIdempotencyKeyException() {
+        // When
+        assertThrows(IdempotencyKeyException.class, () -> execute("k".repeat(129), request));
+
+        // Then
+        verifyNoInteractions(idempotencyKeyRepository);
+    }
+
+    private TransactionResponse execute(String key, TransactionWriteOffRequest writeOffRequest) {
+        return underTest.execute(key, "WRITE_OFF", writeOffRequest, TransactionResponse.class, () -> {
+            executions.incrementAndGet();
+            return response;
+        });
+    }
+}
@@ -0,0 +1,122 @@
+package com.testtask.bankcardmanagement.service.limit.impl;
+
+import com.testtask.bankcardmanagement.exception.limit.LimitExceededException;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.CardSpendCounter;
+import com.testtask.bankcardmanagement.model.CardSpendCounterId;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import com.testtask.bankcardmanagement.repository.CardSpendCounterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LimitServiceImplTest {
+    @Mock private CardSpendCounterRepository cardSpendCounterRepository;
+    @InjectMocks private LimitServiceImpl underTest;
+
+    private Card card;
+    private CardSpendCounterId dayCounterId;
+    private CardSpendCounterId monthCounterId;
+
+    @BeforeEach
+    void setUp() {
+        card = new Card();
+        card.setId(1L);
+
+        LocalDate today = LocalDate.now();
+        dayCounterId = new CardSpendCounterId(card.getId(), SpendPeriodType.DAY, today);
+        monthCounterId = new CardSpendCounterId(card.getId(), SpendPeriodType.MONTH, today.withDayOfMonth(1));
+    }
+
+    @Test
+    void checkCardLimits_whenNoLimit_shouldNotReadCounters() {
+        // Given
+        card.setLimits(List.of(new Limit(1L, card, LimitType.NO_LIMIT, null)));
+
+        // When
+        underTest.checkCardLimits(card, new BigDecimal("100000"));
+
+        // Then
+        verifyNoInteractions(cardSpendCounterRepository);
+    }
+
+    @Test
+    void checkCardLimits_whenDailyAndMonthlyLimits_shouldReadBothCountersByIdAtOnce() {
+        // Given
+        card.setLimits(List.of(
+                new Limit(1L, card, LimitType.DAILY, new BigDecimal("1000")),
+                new Limit(2L, card, LimitType.MONTHLY, new BigDecimal("5000"))
+        ));
+
+        when(cardSpendCounterRepository.findAllById(List.of(dayCounterId, monthCounterId))).thenReturn(List.of(
+                new CardSpendCounter(dayCounterId, new BigDecimal("900")),
+                new CardSpendCounter(monthCounterId, new BigDecimal("4000"))
+        ));
+
+        // When / Then
+        assertDoesNotThrow(() -> underTest.checkCardLimits(card, new BigDecimal("100")));
+
+        verify(cardSpendCounterRepository).findAllById(List.of(dayCounterId, monthCounterId));
+        verifyNoMoreInteractions(cardSpendCounterRepository);
+    }
+
+    @Test
+    void checkCardLimits_whenDailyLimitExceeded_shouldThrowLimitExceededException() {
+        // Given
+        card.setLimits(List.of(new Limit(1L, card, LimitType.DAILY, new BigDecimal("1000"))));
+
+        when(cardSpendCounterRepository.findAllById(List.of(dayCounterId)))
+                .thenReturn(List.of(new CardSpendCounter(dayCounterId, new BigDecimal("950"))));
+
+        // When
+        LimitExceededException exception = assertThrows(
+                LimitExceededException.class,
+                () -> underTest.checkCardLimits(card, new BigDecimal("100"))
+        );
+
+        // Then
+        assertThat(exception).hasMessage("Limit DAILY exceeded. Max: 1000, current operation 100, already spent: 950");
+    }
+
+    @Test
+    void checkCardLimits_whenMonthlyLimitAndNoCounter_shouldTreatSpentAsZero() {
+        // Given
+        card.setLimits(List.of(new Limit(1L, card, LimitType.MONTHLY, new BigDecimal("1000"))));
+
+        when(cardSpendCounterRepository.findAllById(List.of(monthCounterId))).thenReturn(Collections.emptyList());
+
+        // When / Then
+        assertDoesNotThrow(() -> underTest.checkCardLimits(card, new BigDecimal("1000")));
+    }
+
+    @Test
+    void registerWriteOff_shouldAddAmountToDayAndMonthCounters() {
+        // Given
+        LocalDateTime dateTime = LocalDateTime.of(2025, 3, 15, 10, 0);
+        BigDecimal amount = new BigDecimal("50");
+
+        // When
+        underTest.registerWriteOff(card, amount, dateTime);
+
+        // Then
+        verify(cardSpendCounterRepository).addAmount(card.getId(), "DAY", LocalDate.of(2025, 3, 15), amount);
+        verify(cardSpendCounterRepository).addAmount(card.getId(), "MONTH", LocalDate.of(2025, 3, 1), amount);
+    }
+}
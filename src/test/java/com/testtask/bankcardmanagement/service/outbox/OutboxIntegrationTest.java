@@ -0,0 +1,120 @@
+package com.testtask.bankcardmanagement.service.outbox;
+
+import com.testtask.bankcardmanagement.AbstractIntegrationTest;
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.job.OutboxRelayJob;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionTransferRequest;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.OutboxEventRepository;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the posted transactions are written to the outbox with the payment and published in order by the relay
+ */
+@TestPropertySource(properties = "my.outbox.relay.enabled=false")
+@Import(OutboxIntegrationTest.CollectingListener.class)
+class OutboxIntegrationTest extends AbstractIntegrationTest {
+    @Autowired private TransactionService transactionService;
+    @Autowired private OutboxRelayJob outboxRelayJob;
+    @Autowired private OutboxEventRepository outboxEventRepository;
+    @Autowired private CollectingListener listener;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private AESEncryption aesEncryption;
+    @Autowired private HMACHashing hmacHashing;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(null, UUID.randomUUID() + "@test.com", "password", UserRole.USER, null, null));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void relay_shouldPublishPostedTransactionsInOrderOfCard() {
+        // Given
+        Long senderCardId = createCard("3333444455551111", new BigDecimal("100.00"));
+        Long receiverCardId = createCard("3333444455552222", new BigDecimal("0.00"));
+        transactionService.writeOff(new TransactionWriteOffRequest("3333444455551111", new BigDecimal("10.00"), null), null);
+        transactionService.transfer(new TransactionTransferRequest(
+                "3333444455551111", "3333444455552222", new BigDecimal("20.00"), null), null);
+
+        // When
+        outboxRelayJob.relay();
+
+        // Then
+        List<TransactionPostedEvent> senderEvents = listener.eventsOf(senderCardId);
+        assertThat(senderEvents).extracting(event -> event.transaction().amount().toPlainString())
+                .containsExactly("10.00", "20.00");
+        assertThat(senderEvents.get(0).eventId()).isLessThan(senderEvents.get(1).eventId());
+        assertThat(listener.eventsOf(receiverCardId)).extracting(event -> event.transaction().type())
+                .containsExactly(TransactionType.REPLENISHMENT);
+        assertThat(outboxEventRepository.findOldestUnpublishedCreatedAt()).isEmpty();
+    }
+
+    private Long createCard(String number, BigDecimal balance) {
+        Card card = new Card();
+        card.setEncryptedNumber(aesEncryption.encrypt(number));
+        card.setCardHash(hmacHashing.hash(number));
+        card.setLastFourDigits(number.substring(12));
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(balance);
+        card.setLimits(new ArrayList<>(List.of(new Limit(null, card, LimitType.NO_LIMIT, null))));
+
+        return cardRepository.save(card).getId();
+    }
+
+    @TestConfiguration
+    static class CollectingListener {
+        private final List<TransactionPostedEvent> events = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void onTransactionPosted(TransactionPostedEvent event) {
+            events.add(event);
+        }
+
+        List<TransactionPostedEvent> eventsOf(Long cardId) {
+            return events.stream()
+                    .filter(event -> event.transaction().cardId().equals(cardId))
+                    .toList();
+        }
+    }
+}
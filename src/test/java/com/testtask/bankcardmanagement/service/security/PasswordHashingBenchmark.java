@@ -0,0 +1,46 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login throughput by BCrypt cost factor ({@code my.security.password_hashing.strength}):
+ * a login verifies one password, so the result is the number of logins per second the hashing threads can serve.
+ * With the bounded executor the login throughput is limited by the number of hashing threads,
+ * the request threads are not used for hashing.
+ * Run with {@code ./mvnw -P benchmark test-compile exec:exec -Dbenchmark=PasswordHashingBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(4)
+public class PasswordHashingBenchmark {
+    private static final String PASSWORD = "password";
+
+    @Param({"8", "10", "12"})
+    private int strength;
+
+    private BCryptPasswordEncoder passwordEncoder;
+    private String passwordHash;
+
+    @Setup
+    public void setUp() {
+        passwordEncoder = new BCryptPasswordEncoder(strength);
+        passwordHash = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean login() {
+        return passwordEncoder.matches(PASSWORD, passwordHash);
+    }
+
+    @Benchmark
+    public String register() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+}
@@ -0,0 +1,75 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.testtask.bankcardmanagement.exception.security.AuthenticationOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PasswordHashingExecutorTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingExecutor underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new PasswordHashingExecutor(meterRegistry, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void submit_shouldRunTaskInHashingThread() throws Exception {
+        // When
+        String threadName = underTest.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(threadName).startsWith("password-hashing-");
+    }
+
+    @Test
+    void submit_whenThreadBusyAndQueueFull_shouldRejectAtOnce() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = underTest.submit(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        });
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> queued = underTest.submit(() -> "second");
+
+        // When
+        AuthenticationOverloadedException exception = assertThrows(
+                AuthenticationOverloadedException.class,
+                () -> underTest.submit(() -> "third")
+        );
+
+        // Then
+        assertThat(exception).hasMessage("Too many authentication requests, try again later.");
+        assertThat(meterRegistry.counter("auth.hashing.rejected").count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("second");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
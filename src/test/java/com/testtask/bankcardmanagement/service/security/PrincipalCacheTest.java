@@ -0,0 +1,106 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.testtask.bankcardmanagement.exception.user.UserNotFoundException;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PrincipalCacheTest {
+    private static final String EMAIL = "user@test.com";
+
+    @Mock private UserRepository userRepository;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PrincipalCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new PrincipalCache(userRepository, meterRegistry, 100, 60);
+    }
+
+    @Test
+    void getUser_whenCalledTwice_shouldLoadUserOnceAndCountHit() {
+        // Given
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.of(user(UserRole.USER)));
+
+        // When
+        User first = underTest.getUser(EMAIL);
+        User second = underTest.getUser(EMAIL);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(first.getId()).isEqualTo(1L);
+        assertThat(first.getRole()).isEqualTo(UserRole.USER);
+        assertThat(first.getCards()).isNull();
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "principals", "result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "principals", "result", "miss").functionCounter().count()).isEqualTo(1);
+
+        verify(userRepository, times(1)).findUserByEmail(EMAIL);
+    }
+
+    @Test
+    void getUser_whenUserEvicted_shouldLoadChangedRole() {
+        // Given
+        when(userRepository.findUserByEmail(EMAIL))
+                .thenReturn(Optional.of(user(UserRole.USER)))
+                .thenReturn(Optional.of(user(UserRole.ADMIN)));
+        underTest.getUser(EMAIL);
+
+        // When
+        underTest.evict(EMAIL);
+        User actualUser = underTest.getUser(EMAIL);
+
+        // Then
+        assertThat(actualUser.getRole()).isEqualTo(UserRole.ADMIN);
+
+        verify(userRepository, times(2)).findUserByEmail(EMAIL);
+    }
+
+    @Test
+    void getUser_whenEvictedWhileLoading_shouldNotCacheLoadedUser() {
+        // Given
+        when(userRepository.findUserByEmail(EMAIL)).thenAnswer(invocation -> {
+            underTest.evict(EMAIL);
+            return Optional.of(user(UserRole.USER));
+        });
+
+        // When
+        underTest.getUser(EMAIL);
+        underTest.getUser(EMAIL);
+
+        // Then
+        verify(userRepository, times(2)).findUserByEmail(EMAIL);
+    }
+
+    @Test
+    void getUser_whenUserNotFound_shouldThrowAndNotCacheMiss() {
+        // Given
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        // When
+        assertThrows(UserNotFoundException.class, () -> underTest.getUser(EMAIL));
+        assertThrows(UserNotFoundException.class, () -> underTest.getUser(EMAIL));
+
+        // Then
+        verify(userRepository, times(2)).findUserByEmail(EMAIL);
+    }
+
+    private User user(UserRole role) {
+        return new User(1L, EMAIL, "password", role, new ArrayList<>(), 3L);
+    }
+}
@@ -0,0 +1,87 @@
+package com.testtask.bankcardmanagement.service.security;
+
+import com.testtask.bankcardmanagement.model.TokenRevocation;
+import com.testtask.bankcardmanagement.model.enums.AuthenticationMode;
+import com.testtask.bankcardmanagement.repository.TokenRevocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+    @Mock private TokenRevocationRepository tokenRevocationRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    private TokenRevocationService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new TokenRevocationService(tokenRevocationRepository, transactionManager, AuthenticationMode.CLAIMS, 15);
+    }
+
+    @Test
+    void isRevoked_whenUserRevokedAfterTokenIssued_shouldReturnTrue() {
+        // Given
+        givenTransaction();
+        Date issuedAt = Date.from(Instant.now().minusSeconds(60));
+
+        // When
+        underTest.revokeUser(1L);
+
+        // Then
+        assertThat(underTest.isRevoked(1L, issuedAt)).isTrue();
+        assertThat(underTest.isRevoked(2L, issuedAt)).isFalse();
+        assertThat(underTest.isRevoked(1L, Date.from(Instant.now().plusSeconds(1)))).isFalse();
+
+        verify(tokenRevocationRepository).revoke(eq(1L), any(Instant.class));
+    }
+
+    @Test
+    void refresh_shouldLoadRevocationsOfOtherInstancesAndDeleteExpired() {
+        // Given
+        givenTransaction();
+        Instant revokedAt = Instant.now();
+        when(tokenRevocationRepository.findAllByRevokedAtAfter(any(Instant.class)))
+                .thenReturn(List.of(new TokenRevocation(5L, revokedAt)));
+
+        // When
+        underTest.refresh();
+
+        // Then
+        assertThat(underTest.isRevoked(5L, Date.from(revokedAt.minus(Duration.ofMinutes(1))))).isTrue();
+
+        verify(tokenRevocationRepository).deleteAllByRevokedAtBefore(any(Instant.class));
+    }
+
+    @Test
+    void revokeUser_whenDatabaseMode_shouldDoNothing() {
+        // Given
+        underTest = new TokenRevocationService(tokenRevocationRepository, transactionManager, AuthenticationMode.DATABASE, 15);
+
+        // When
+        underTest.revokeUser(1L);
+
+        // Then
+        assertThat(underTest.isRevoked(1L, new Date(0))).isFalse();
+
+        verifyNoInteractions(tokenRevocationRepository);
+        verifyNoInteractions(transactionManager);
+    }
+
+    private void givenTransaction() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+}
@@ -0,0 +1,122 @@
+package com.testtask.bankcardmanagement.service.security.jwt;
+
+import com.testtask.bankcardmanagement.exception.security.JwtTokenException;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.enums.AuthenticationMode;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtServiceTest {
+    private final SecretKey key = Jwts.SIG.HS256.key().build();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final User user = new User(1L, "user@test.com", "password", UserRole.USER, null, null);
+    private JwtService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new JwtService(meterRegistry);
+        ReflectionTestUtils.setField(underTest, "expired_in_days", 1L);
+        ReflectionTestUtils.setField(underTest, "valueForInject", Base64.getEncoder().encodeToString(key.getEncoded()));
+        ReflectionTestUtils.setField(underTest, "tokenCacheMaxSize", 100L);
+        underTest.init();
+    }
+
+    @Test
+    void validateToken_whenCalledTwice_shouldVerifyTokenOnce() {
+        // Given
+        String token = underTest.generateToken(user);
+
+        // When
+        Claims first = underTest.validateToken(token);
+        Claims second = underTest.validateToken(token);
+
+        // Then
+        assertThat(first.getSubject()).isEqualTo("user@test.com");
+        assertThat(second).isSameAs(first);
+        assertThat(underTest.isTokenValid(token, user)).isTrue();
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "verified_tokens", "result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void extractPrincipal_shouldBuildUserFromTokenClaims() {
+        // Given
+        String token = underTest.generateToken(user);
+
+        // When
+        User actualUser = underTest.extractPrincipal(underTest.validateToken(token));
+
+        // Then
+        assertThat(actualUser.getId()).isEqualTo(1L);
+        assertThat(actualUser.getEmail()).isEqualTo("user@test.com");
+        assertThat(actualUser.getRole()).isEqualTo(UserRole.USER);
+        assertThat(actualUser.getPassword()).isNull();
+    }
+
+    @Test
+    void extractPrincipal_whenTokenHasNoUserClaims_shouldThrowJwtTokenException() {
+        // Given
+        String token = Jwts.builder()
+                .subject("user@test.com")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(key)
+                .compact();
+        Claims claims = underTest.validateToken(token);
+
+        // When & Then
+        assertThrows(JwtTokenException.class, () -> underTest.extractPrincipal(claims));
+    }
+
+    @Test
+    void generateToken_whenClaimsMode_shouldIssueShortLivedToken() {
+        // Given
+        ReflectionTestUtils.setField(underTest, "authenticationMode", AuthenticationMode.CLAIMS);
+        ReflectionTestUtils.setField(underTest, "claimsTokenTtlMinutes", 15L);
+
+        // When
+        Claims claims = underTest.validateToken(underTest.generateToken(user));
+
+        // Then
+        assertThat(claims.getExpiration()).isBefore(new Date(System.currentTimeMillis() + 16 * 60_000));
+    }
+
+    @Test
+    void validateToken_whenTokenExpired_shouldThrowExpiredJwtException() {
+        // Given
+        String token = Jwts.builder()
+                .subject("user@test.com")
+                .expiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(key)
+                .compact();
+
+        // When & Then
+        assertThrows(ExpiredJwtException.class, () -> underTest.validateToken(token));
+    }
+
+    @Test
+    void validateToken_whenSignedWithOtherKey_shouldThrowSignatureException() {
+        // Given
+        String token = Jwts.builder()
+                .subject("user@test.com")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Jwts.SIG.HS256.key().build())
+                .compact();
+
+        // When & Then
+        assertThrows(SignatureException.class, () -> underTest.validateToken(token));
+    }
+}
@@ -0,0 +1,186 @@
+package com.testtask.bankcardmanagement.service.transaction;
+
+import com.testtask.bankcardmanagement.exception.card.CardNotAvailableException;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import com.testtask.bankcardmanagement.service.card.CardService;
+import com.testtask.bankcardmanagement.service.security.SecurityUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteOffSequencerTest {
+    private static final String CARD_NUMBER = "1111222233334444";
+
+    @Mock private TransactionService transactionService;
+    @Mock private CardService cardService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final User user = new User(1L, "user@test.com", "password", null, null, null);
+    private WriteOffSequencer underTest;
+    private MockedStatic<SecurityUtil> securityUtil;
+
+    @BeforeEach
+    void setUp() {
+        securityUtil = mockStatic(SecurityUtil.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        securityUtil.close();
+        if(underTest != null)
+            underTest.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writeOff_whenWriteOffsQueuedWithinLinger_shouldApplyThemInOneGroup() throws Exception {
+        // Given
+        underTest = new WriteOffSequencer(transactionService, cardService, meterRegistry, true, 50, 200, 1);
+        givenCard();
+        doAnswer(invocation -> {
+            List<PendingWriteOff> writeOffs = invocation.getArgument(1);
+            writeOffs.forEach(writeOff -> writeOff.result().complete(response(writeOff.request().amount())));
+            return null;
+        }).when(transactionService).writeOffGroup(eq(10L), anyList());
+
+        // When
+        CompletableFuture<TransactionResponse> first = underTest.writeOff(request("10"));
+        CompletableFuture<TransactionResponse> second = underTest.writeOff(request("20"));
+        CompletableFuture<TransactionResponse> third = underTest.writeOff(request("30"));
+
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS).amount()).isEqualByComparingTo("10");
+        assertThat(second.get(5, TimeUnit.SECONDS).amount()).isEqualByComparingTo("20");
+        assertThat(third.get(5, TimeUnit.SECONDS).amount()).isEqualByComparingTo("30");
+        assertThat(meterRegistry.get("payment.write_off.group_commit.batch_size").summary().count()).isEqualTo(1);
+        // The latency is recorded after the group has completed the results
+        awaitLatencyCount(3);
+
+        ArgumentCaptor<List<PendingWriteOff>> groupCaptor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService, times(1)).writeOffGroup(eq(10L), groupCaptor.capture());
+        assertThat(groupCaptor.getValue()).extracting(writeOff -> writeOff.request().amount().toPlainString())
+                .containsExactly("10", "20", "30");
+    }
+
+    @Test
+    void writeOff_whenMoreWriteOffsThanBatchSize_shouldSplitThemIntoGroups() throws Exception {
+        // Given
+        underTest = new WriteOffSequencer(transactionService, cardService, meterRegistry, true, 2, 200, 1);
+        givenCard();
+        doAnswer(invocation -> {
+            List<PendingWriteOff> writeOffs = invocation.getArgument(1);
+            writeOffs.forEach(writeOff -> writeOff.result().complete(response(writeOff.request().amount())));
+            return null;
+        }).when(transactionService).writeOffGroup(eq(10L), anyList());
+
+        // When
+        CompletableFuture<TransactionResponse> first = underTest.writeOff(request("10"));
+        CompletableFuture<TransactionResponse> second = underTest.writeOff(request("20"));
+        CompletableFuture<TransactionResponse> third = underTest.writeOff(request("30"));
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+
+        // Then
+        verify(transactionService, times(2)).writeOffGroup(eq(10L), anyList());
+    }
+
+    @Test
+    void writeOff_whenGroupFails_shouldFailEveryWriteOffOfGroup() {
+        // Given
+        underTest = new WriteOffSequencer(transactionService, cardService, meterRegistry, true, 50, 200, 1);
+        givenCard();
+        doThrow(new CardNotAvailableException("This card is blocked"))
+                .when(transactionService).writeOffGroup(eq(10L), anyList());
+
+        // When
+        CompletableFuture<TransactionResponse> first = underTest.writeOff(request("10"));
+        CompletableFuture<TransactionResponse> second = underTest.writeOff(request("20"));
+
+        // Then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(CardNotAvailableException.class);
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void writeOff_whenShutdownBeforeGroupStarted_shouldFailQueuedWriteOffs() {
+        // Given
+        underTest = new WriteOffSequencer(transactionService, cardService, meterRegistry, true, 50, 60_000, 1);
+        givenCard();
+        CompletableFuture<TransactionResponse> first = underTest.writeOff(request("10"));
+        CompletableFuture<TransactionResponse> second = underTest.writeOff(request("20"));
+
+        // When
+        underTest.shutdown();
+
+        // Then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(RejectedExecutionException.class);
+        assertThat(second).isCompletedExceptionally();
+
+        verify(transactionService, never()).writeOffGroup(any(), anyList());
+    }
+
+    @Test
+    void isGroupCommit_shouldBeFalseWhenDisabledOrIdempotencyKeyGiven() {
+        // Given
+        underTest = new WriteOffSequencer(transactionService, cardService, meterRegistry, false, 50, 2, 1);
+        WriteOffSequencer enabled = new WriteOffSequencer(transactionService, cardService, meterRegistry, true, 50, 2, 1);
+
+        try {
+            // When / Then
+            assertThat(underTest.isGroupCommit(null)).isFalse();
+            assertThat(enabled.isGroupCommit("key-1")).isFalse();
+            assertThat(enabled.isGroupCommit(null)).isTrue();
+        } finally {
+            enabled.shutdown();
+        }
+    }
+
+    private void awaitLatencyCount(long expected) throws InterruptedException {
+        Timer latency = meterRegistry.get("payment.write_off.group_commit.latency").timer();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (latency.count() < expected && System.nanoTime() < deadline)
+            Thread.sleep(10);
+
+        assertThat(latency.count()).isEqualTo(expected);
+    }
+
+    private void givenCard() {
+        securityUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
+        when(cardService.findCardIdByNumber(CARD_NUMBER, user)).thenReturn(10L);
+        when(cardService.validateCardOwnership(10L)).thenReturn(true);
+    }
+
+    private TransactionWriteOffRequest request(String amount) {
+        return new TransactionWriteOffRequest(CARD_NUMBER, new BigDecimal(amount), null);
+    }
+
+    private TransactionResponse response(BigDecimal amount) {
+        return new TransactionResponse(amount, TransactionType.WRITE_OFF, null, null, null, null);
+    }
+}
@@ -0,0 +1,150 @@
+package com.testtask.bankcardmanagement.service.transaction.impl;
+
+import com.testtask.bankcardmanagement.AbstractIntegrationTest;
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferRequest;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionTransferRequest;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the transactions of a transfer and of a batch transfer are written by one JDBC batch
+ */
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+                "com.testtask.bankcardmanagement.service.transaction.impl.TransactionBatchInsertTest$TransactionInsertCounter"
+})
+class TransactionBatchInsertTest extends AbstractIntegrationTest {
+    @Autowired private TransactionService transactionService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private AESEncryption aesEncryption;
+    @Autowired private HMACHashing hmacHashing;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User(null, UUID.randomUUID() + "@test.com", "password", UserRole.USER, null, null));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void transfer_shouldInsertBothTransactionsInOneBatch() {
+        // Given
+        createCard("2222333344441111", new BigDecimal("100.00"));
+        createCard("2222333344442222", new BigDecimal("100.00"));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        TransactionInsertCounter.PREPARED_INSERTS.set(0);
+
+        // When
+        transactionService.transfer(new TransactionTransferRequest(
+                "2222333344441111", "2222333344442222", new BigDecimal("10.00"), null), null);
+
+        // Then
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(2);
+        assertThat(TransactionInsertCounter.PREPARED_INSERTS).hasValue(1);
+    }
+
+    @Test
+    void transferBatch_shouldInsertAllTransactionsInOneBatch() {
+        // Given
+        createCard("2222333344441111", new BigDecimal("100.00"));
+        createCard("2222333344442222", new BigDecimal("0.00"));
+        createCard("2222333344443333", new BigDecimal("0.00"));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        TransactionInsertCounter.PREPARED_INSERTS.set(0);
+
+        // When
+        TransactionBatchTransferResponse response = transactionService.transferBatch(new TransactionBatchTransferRequest(
+                "2222333344441111",
+                List.of(
+                        new TransactionBatchTransferItem("2222333344442222", new BigDecimal("10.00"), null),
+                        new TransactionBatchTransferItem("2222333344443333", new BigDecimal("20.00"), null),
+                        new TransactionBatchTransferItem("2222333344442222", new BigDecimal("30.00"), null)
+                ),
+                null), null);
+
+        // Then
+        assertThat(response.completed()).isEqualTo(3);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(6);
+        assertThat(TransactionInsertCounter.PREPARED_INSERTS).hasValue(1);
+        assertThat(cardRepository.findByUserAndCardHash(user, hmacHashing.hash("2222333344441111")).orElseThrow().getBalance())
+                .isEqualByComparingTo("40.00");
+        assertThat(cardRepository.findByUserAndCardHash(user, hmacHashing.hash("2222333344442222")).orElseThrow().getBalance())
+                .isEqualByComparingTo("40.00");
+    }
+
+    private void createCard(String number, BigDecimal balance) {
+        Card card = new Card();
+        card.setEncryptedNumber(aesEncryption.encrypt(number));
+        card.setCardHash(hmacHashing.hash(number));
+        card.setLastFourDigits(number.substring(12));
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(balance);
+        card.setLimits(new ArrayList<>(List.of(new Limit(null, card, LimitType.NO_LIMIT, null))));
+
+        cardRepository.save(card);
+    }
+
+    /**
+     * Counts the prepared insert statements into the transactions table.
+     * A JDBC batch is one prepared statement executed with several sets of parameters
+     */
+    public static class TransactionInsertCounter implements StatementInspector {
+        static final AtomicInteger PREPARED_INSERTS = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            if(sql.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").startsWith("insert into transactions"))
+                PREPARED_INSERTS.incrementAndGet();
+
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.testtask.bankcardmanagement.service.transaction.impl;
+
+import com.testtask.bankcardmanagement.exception.other.InvalidCursorException;
+import com.testtask.bankcardmanagement.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionCursorTest {
+
+    @Test
+    void decode_whenCursorCreatedByEncode_shouldReturnSamePosition() {
+        // Given
+        Transaction transaction = new Transaction();
+        transaction.setId(15L);
+        transaction.setTransactionDate(LocalDateTime.of(2025, 1, 1, 10, 0, 5));
+
+        // When
+        String cursor = TransactionCursor.of(transaction).encode();
+        TransactionCursor actualCursor = TransactionCursor.decode(cursor);
+
+        // Then
+        assertThat(cursor).doesNotContain("2025");
+        assertThat(actualCursor.transactionDate()).isEqualTo(transaction.getTransactionDate());
+        assertThat(actualCursor.id()).isEqualTo(15L);
+    }
+
+    @Test
+    void decode_whenCursorIsNotBase64_shouldThrowInvalidCursorException() {
+        // When
+        InvalidCursorException exception = assertThrows(
+                InvalidCursorException.class,
+                () -> TransactionCursor.decode("not a cursor!")
+        );
+
+        // Then
+        assertThat(exception).hasMessage("Invalid cursor.");
+    }
+
+    @Test
+    void decode_whenCursorHasWrongContent_shouldThrowInvalidCursorException() {
+        // Given
+        String cursor = Base64.getUrlEncoder().encodeToString("2025-01-01T10:00_abc".getBytes(StandardCharsets.UTF_8));
+
+        // When // Then
+        assertThrows(InvalidCursorException.class, () -> TransactionCursor.decode(cursor));
+    }
+}
@@ -0,0 +1,136 @@
+package com.testtask.bankcardmanagement.service.transaction.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.testtask.bankcardmanagement.exception.card.CardNotFoundException;
+import com.testtask.bankcardmanagement.exception.transaction.TransactionDeclinedException;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
+import com.testtask.bankcardmanagement.model.enums.ExportFormat;
+import com.testtask.bankcardmanagement.model.enums.TransactionType;
+import com.testtask.bankcardmanagement.repository.TransactionRepository;
+import com.testtask.bankcardmanagement.service.card.CardService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportServiceImplTest {
+    @Mock private TransactionRepository transactionRepository;
+    @Mock private CardService cardService;
+    @Mock private TransactionTemplate transactionTemplate;
+    private TransactionExportServiceImpl underTest;
+
+    private final TransactionParamFilter filter = new TransactionParamFilter(null, TransactionType.WRITE_OFF, null, null, false);
+    private final TransactionHistoryItem writeOff = new TransactionHistoryItem(
+            1L, new BigDecimal("10.50"), TransactionType.WRITE_OFF, null, LocalDateTime.of(2025, 1, 1, 10, 0), "Coffee");
+    private final TransactionHistoryItem transfer = new TransactionHistoryItem(
+            2L, new BigDecimal("100.00"), TransactionType.WRITE_OFF, "**** **** **** 1234", LocalDateTime.of(2025, 1, 2, 10, 0),
+            "Rent, \"January\"");
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        underTest = new TransactionExportServiceImpl(transactionRepository, cardService, transactionTemplate, objectMapper);
+    }
+
+    @Test
+    void exportByCard_whenFormatCsv_shouldWriteHeaderAndEscapedRows() throws Exception {
+        // Given
+        AtomicBoolean streamClosed = new AtomicBoolean();
+        givenTransactionTemplateExecutesCallback();
+        when(cardService.existById(1L)).thenReturn(true);
+        when(transactionRepository.streamHistoryByCard(1L, TransactionType.WRITE_OFF, null, null))
+                .thenReturn(Stream.of(writeOff, transfer).onClose(() -> streamClosed.set(true)));
+
+        // When
+        String output = write(underTest.exportByCard(1L, filter, ExportFormat.CSV));
+
+        // Then
+        assertThat(output).isEqualTo("""
+                id,type,amount,target_card,datetime,description
+                1,WRITE_OFF,10.50,,2025-01-01T10:00,Coffee
+                2,WRITE_OFF,100.00,**** **** **** 1234,2025-01-02T10:00,"Rent, ""January\"""
+                """);
+        assertThat(streamClosed).isTrue();
+    }
+
+    @Test
+    void exportByCard_whenFormatNdjson_shouldWriteOneJsonObjectPerLine() throws Exception {
+        // Given
+        givenTransactionTemplateExecutesCallback();
+        when(cardService.existById(1L)).thenReturn(true);
+        when(transactionRepository.streamHistoryByCard(1L, TransactionType.WRITE_OFF, null, null))
+                .thenReturn(Stream.of(writeOff, transfer));
+
+        // When
+        String output = write(underTest.exportByCard(1L, filter, ExportFormat.NDJSON));
+
+        // Then
+        assertThat(output.split("\n"))
+                .hasSize(2)
+                .allSatisfy(line -> assertThat(line).startsWith("{").endsWith("}"));
+        assertThat(output.split("\n")[0])
+                .contains("\"id\":1", "\"amount\":10.50", "\"type\":\"WRITE_OFF\"", "\"datetime\":\"2025-01-01T10:00:00\"");
+    }
+
+    @Test
+    void exportByCard_whenCardNotFound_shouldThrowBeforeStreaming() {
+        // Given
+        when(cardService.existById(1L)).thenReturn(false);
+
+        // When
+        assertThrows(CardNotFoundException.class, () -> underTest.exportByCard(1L, filter, ExportFormat.CSV));
+
+        // Then
+        verifyNoInteractions(transactionRepository);
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    void exportByUserCard_whenCardDoesNotBelongToUser_shouldThrowBeforeStreaming() {
+        // Given
+        when(cardService.validateCardOwnership(1L)).thenReturn(false);
+
+        // When
+        assertThrows(TransactionDeclinedException.class, () -> underTest.exportByUserCard(1L, filter, ExportFormat.NDJSON));
+
+        // Then
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenTransactionTemplateExecutesCallback() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any(Consumer.class));
+    }
+
+    private String write(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,200 @@
+package com.testtask.bankcardmanagement.service.transaction.impl;
+
+import com.testtask.bankcardmanagement.AbstractIntegrationTest;
+import com.testtask.bankcardmanagement.encrypt.AESEncryption;
+import com.testtask.bankcardmanagement.encrypt.HMACHashing;
+import com.testtask.bankcardmanagement.exception.card.CardBalanceException;
+import com.testtask.bankcardmanagement.exception.limit.LimitExceededException;
+import com.testtask.bankcardmanagement.model.Card;
+import com.testtask.bankcardmanagement.model.CardSpendCounterId;
+import com.testtask.bankcardmanagement.model.Limit;
+import com.testtask.bankcardmanagement.model.User;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionTransferRequest;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
+import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.LimitType;
+import com.testtask.bankcardmanagement.model.enums.SpendPeriodType;
+import com.testtask.bankcardmanagement.model.enums.UserRole;
+import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.CardSpendCounterRepository;
+import com.testtask.bankcardmanagement.repository.UserRepository;
+import com.testtask.bankcardmanagement.service.transaction.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent operations with the same cards against a real database
+ */
+class TransactionServiceConcurrencyTest extends AbstractIntegrationTest {
+    private static final int THREADS = 16;
+
+    @Autowired private TransactionService transactionService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private CardSpendCounterRepository cardSpendCounterRepository;
+    @Autowired private AESEncryption aesEncryption;
+    @Autowired private HMACHashing hmacHashing;
+
+    private ExecutorService executor;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        user = userRepository.save(new User(null, UUID.randomUUID() + "@test.com", "password", UserRole.USER, null, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writeOff_whenManyThreadsWriteOffFromOneCard_shouldNotLoseUpdates() throws Exception {
+        // Given
+        int operations = 200;
+        Card card = createCard("1111222233334444", new BigDecimal("10000.00"), null);
+
+        // When
+        runConcurrently(operations, i -> transactionService.writeOff(
+                new TransactionWriteOffRequest("1111222233334444", BigDecimal.ONE, null), null));
+
+        // Then
+        assertThat(balanceOf(card)).isEqualByComparingTo("9800.00");
+        assertThat(spentToday(card)).isEqualByComparingTo("200.00");
+    }
+
+    @Test
+    void writeOff_whenManyThreadsExceedDailyLimit_shouldWriteOffOnlyUpToLimit() throws Exception {
+        // Given
+        Card card = createCard("1111222233335555", new BigDecimal("1000.00"), new BigDecimal("100.00"));
+        AtomicInteger declined = new AtomicInteger();
+
+        // When
+        runConcurrently(50, i -> {
+            try {
+                transactionService.writeOff(new TransactionWriteOffRequest("1111222233335555", BigDecimal.TEN, null), null);
+            } catch (LimitExceededException e) {
+                declined.incrementAndGet();
+            }
+        });
+
+        // Then
+        assertThat(declined).hasValue(40);
+        assertThat(balanceOf(card)).isEqualByComparingTo("900.00");
+        assertThat(spentToday(card)).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void writeOff_whenManyThreadsSpendMoreThanBalance_shouldNotMakeBalanceNegative() throws Exception {
+        // Given
+        Card card = createCard("1111222233338888", new BigDecimal("50.00"), null);
+        AtomicInteger declined = new AtomicInteger();
+
+        // When
+        runConcurrently(100, i -> {
+            try {
+                transactionService.writeOff(new TransactionWriteOffRequest("1111222233338888", BigDecimal.ONE, null), null);
+            } catch (CardBalanceException e) {
+                declined.incrementAndGet();
+            }
+        });
+
+        // Then
+        assertThat(declined).hasValue(50);
+        assertThat(balanceOf(card)).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void transfer_whenTransfersGoInOppositeDirections_shouldNotDeadlockAndKeepTotal() throws Exception {
+        // Given
+        Card cardA = createCard("1111222233336666", new BigDecimal("1000.00"), null);
+        Card cardB = createCard("1111222233337777", new BigDecimal("1000.00"), null);
+
+        // When
+        runConcurrently(100, i -> {
+            boolean fromA = i % 2 == 0;
+            transactionService.transfer(new TransactionTransferRequest(
+                    fromA ? "1111222233336666" : "1111222233337777",
+                    fromA ? "1111222233337777" : "1111222233336666",
+                    new BigDecimal("5.00"),
+                    null
+            ), null);
+        });
+
+        // Then
+        assertThat(balanceOf(cardA)).isEqualByComparingTo("1000.00");
+        assertThat(balanceOf(cardB)).isEqualByComparingTo("1000.00");
+    }
+
+    private Card createCard(String number, BigDecimal balance, BigDecimal dailyLimit) {
+        Card card = new Card();
+        card.setEncryptedNumber(aesEncryption.encrypt(number));
+        card.setCardHash(hmacHashing.hash(number));
+        card.setLastFourDigits(number.substring(12));
+        card.setExpirationDate(LocalDate.now().plusYears(1));
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(balance);
+        card.setLimits(new ArrayList<>(List.of(dailyLimit == null
+                ? new Limit(null, card, LimitType.NO_LIMIT, null)
+                : new Limit(null, card, LimitType.DAILY, dailyLimit))));
+
+        return cardRepository.save(card);
+    }
+
+    /**
+     * The method starts all operations at the same time as the authenticated user and waits for them
+     */
+    private void runConcurrently(int operations, IntConsumer operation) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(operations);
+        for(int i = 0; i < operations; i++) {
+            int number = i;
+            futures.add(executor.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+                try {
+                    start.await();
+                    operation.accept(number);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for(Future<?> future: futures)
+            future.get(1, TimeUnit.MINUTES);
+    }
+
+    private BigDecimal balanceOf(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow().getBalance();
+    }
+
+    private BigDecimal spentToday(Card card) {
+        return cardSpendCounterRepository.findById(new CardSpendCounterId(card.getId(), SpendPeriodType.DAY, LocalDate.now()))
+                .orElseThrow()
+                .getAmount();
+    }
+
+    @FunctionalInterface
+    private interface IntConsumer {
+        void accept(int value) throws Exception;
+    }
+}
@@ -1,5 +1,7 @@
 package com.testtask.bankcardmanagement.service.transaction.impl;
 
+import com.testtask.bankcardmanagement.exception.card.CardBalanceException;
+import com.testtask.bankcardmanagement.exception.card.CardNotFoundException;
 import com.testtask.bankcardmanagement.exception.transaction.TransactionDeclinedException;
 import com.testtask.bankcardmanagement.model.Card;
 import com.testtask.bankcardmanagement.model.Limit;
@@ -7,31 +9,57 @@ import com.testtask.bankcardmanagement.model.Transaction;
 import com.testtask.bankcardmanagement.model.User;
 import com.testtask.bankcardmanagement.model.dto.card.CardResponse;
 import com.testtask.bankcardmanagement.model.dto.limit.LimitResponse;
+import com.testtask.bankcardmanagement.model.dto.page.CursorPage;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchItemResult;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferRequest;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionBatchTransferResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryItem;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionHistoryResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionParamFilter;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionResponse;
+import com.testtask.bankcardmanagement.model.dto.transaction.TransactionTransferRequest;
 import com.testtask.bankcardmanagement.model.dto.transaction.TransactionWriteOffRequest;
 import com.testtask.bankcardmanagement.model.dto.user.UserResponse;
+import com.testtask.bankcardmanagement.model.enums.BatchItemStatus;
 import com.testtask.bankcardmanagement.model.enums.CardStatus;
+import com.testtask.bankcardmanagement.model.enums.CountMode;
 import com.testtask.bankcardmanagement.model.enums.LimitType;
 import com.testtask.bankcardmanagement.model.enums.TransactionType;
 import com.testtask.bankcardmanagement.model.mapper.TransactionMapper;
 import com.testtask.bankcardmanagement.repository.CardRepository;
+import com.testtask.bankcardmanagement.repository.SliceRepository;
 import com.testtask.bankcardmanagement.repository.TransactionRepository;
 import com.testtask.bankcardmanagement.service.card.impl.CardServiceImpl;
+import com.testtask.bankcardmanagement.service.idempotency.IdempotencyService;
 import com.testtask.bankcardmanagement.service.limit.impl.LimitServiceImpl;
+import com.testtask.bankcardmanagement.service.outbox.OutboxService;
 import com.testtask.bankcardmanagement.service.security.SecurityUtil;
+import com.testtask.bankcardmanagement.service.transaction.PendingWriteOff;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -41,9 +69,12 @@ import static org.mockito.Mockito.*;
 class TransactionServiceImplTest {
     @Mock private TransactionRepository transactionRepository;
     @Mock private CardRepository cardRepository;
+    @Mock private SliceRepository sliceRepository;
     @Mock private TransactionMapper transactionMapper;
     @Mock private CardServiceImpl cardService;
     @Mock private LimitServiceImpl limitService;
+    @Mock private IdempotencyService idempotencyService;
+    @Mock private OutboxService outboxService;
     @InjectMocks private TransactionServiceImpl underTest;
 
     private User user;
@@ -137,16 +168,17 @@ class TransactionServiceImplTest {
             secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
             mockedDateTime.when(LocalDateTime::now).thenReturn(transactionDateTime);
 
-            when(cardService.findCardByNumber(searchedCardNumber, user)).thenReturn(card2);
+            when(cardService.findCardIdByNumber(searchedCardNumber, user)).thenReturn(card2.getId());
             when(cardService.validateCardOwnership(card2.getId())).thenReturn(true);
+            when(cardService.lockCards(List.of(card2.getId()))).thenReturn(List.of(card2));
             when(cardService.isCardAvailable(card2)).thenReturn(true);
             doNothing().when(limitService).checkCardLimits(card2, amount);
-            when(cardRepository.save(card2)).thenReturn(card2);
+            when(cardRepository.withdraw(card2.getId(), card2.getVersion(), CardStatus.ACTIVE, amount)).thenReturn(1);
             when(transactionRepository.save(any(Transaction.class))).thenReturn(expectedTransaction);
             when(transactionMapper.toTransactionResponse(expectedTransaction)).thenReturn(expectedTransactionResponse);
 
             // When
-            TransactionResponse actualTransactionResponse = underTest.writeOff(transactionWriteOffRequest);
+            TransactionResponse actualTransactionResponse = underTest.writeOff(transactionWriteOffRequest, null);
 
             // Then
             ArgumentCaptor<Transaction> transactionCaptor = ArgumentCaptor.forClass(Transaction.class);
@@ -167,15 +199,41 @@ class TransactionServiceImplTest {
             assertThat(actualTransactionResponse.targetCard()).isEqualTo(expectedTransactionResponse.targetCard());
             assertThat(actualTransactionResponse.description()).isEqualTo(expectedTransactionResponse.description());
 
-            verify(cardService).findCardByNumber(searchedCardNumber, user);
+            verify(cardService).findCardIdByNumber(searchedCardNumber, user);
             verify(cardService).validateCardOwnership(card2.getId());
+            verify(cardService).lockCards(List.of(card2.getId()));
             verify(cardService).isCardAvailable(card2);
             verify(limitService).checkCardLimits(card2, amount);
-            verify(cardRepository).save(card2);
+            verify(limitService).registerWriteOff(card2, amount, transactionDateTime);
+            verify(cardRepository).withdraw(card2.getId(), card2.getVersion(), CardStatus.ACTIVE, amount);
+            assertThat(card2.getBalance()).isEqualByComparingTo(expectedCardBalance);
             verify(transactionMapper).toTransactionResponse(expectedTransaction);
         }
     }
 
+    @Test
+    void writeOff_whenIdempotencyKeyGiven_shouldExecuteOnceThroughIdempotencyService() {
+        // Given
+        TransactionWriteOffRequest transactionWriteOffRequest = new TransactionWriteOffRequest(
+                "searchedCardNumber",
+                new BigDecimal("10"),
+                null
+        );
+        TransactionResponse storedResponse = new TransactionResponse(
+                new BigDecimal("10"), TransactionType.WRITE_OFF, null, null, LocalDateTime.of(2025, 1, 1, 10, 0), null);
+        when(idempotencyService.execute(eq("key-1"), eq("WRITE_OFF"), eq(transactionWriteOffRequest), eq(TransactionResponse.class), any()))
+                .thenReturn(storedResponse);
+
+        // When
+        TransactionResponse actualTransactionResponse = underTest.writeOff(transactionWriteOffRequest, "key-1");
+
+        // Then
+        assertThat(actualTransactionResponse).isSameAs(storedResponse);
+
+        verifyNoInteractions(cardService);
+        verifyNoInteractions(transactionRepository);
+    }
+
     @Test
     void writeOff_whenCardBelongsToUserAndUnavailable_shouldThrowTransactionDeclinedException() {
         try (MockedStatic<SecurityUtil> secureUtil = mockStatic(SecurityUtil.class)) {
@@ -191,21 +249,23 @@ class TransactionServiceImplTest {
             );
 
             secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
-            when(cardService.findCardByNumber(searchedCardNumber, user)).thenReturn(card1);
+            when(cardService.findCardIdByNumber(searchedCardNumber, user)).thenReturn(card1.getId());
             when(cardService.validateCardOwnership(card1.getId())).thenReturn(true);
+            when(cardService.lockCards(List.of(card1.getId()))).thenReturn(List.of(card1));
             when(cardService.isCardAvailable(card1)).thenReturn(false);
 
             // When
             TransactionDeclinedException exception = assertThrows(
                     TransactionDeclinedException.class,
-                    () -> underTest.writeOff(transactionWriteOffRequest)
+                    () -> underTest.writeOff(transactionWriteOffRequest, null)
             );
 
             // Then
             assertThat(exception).hasMessage("The card is not valid.");
 
-            verify(cardService).findCardByNumber(searchedCardNumber, user);
+            verify(cardService).findCardIdByNumber(searchedCardNumber, user);
             verify(cardService).validateCardOwnership(card1.getId());
+            verify(cardService).lockCards(List.of(card1.getId()));
             verify(cardService).isCardAvailable(card1);
             verifyNoMoreInteractions(cardRepository);
             verifyNoInteractions(transactionRepository);
@@ -228,19 +288,19 @@ class TransactionServiceImplTest {
             );
 
             secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
-            when(cardService.findCardByNumber(searchedCardNumber, user)).thenReturn(card1);
+            when(cardService.findCardIdByNumber(searchedCardNumber, user)).thenReturn(card1.getId());
             when(cardService.validateCardOwnership(card1.getId())).thenReturn(false);
 
             // When
             TransactionDeclinedException exception = assertThrows(
                     TransactionDeclinedException.class,
-                    () -> underTest.writeOff(transactionWriteOffRequest)
+                    () -> underTest.writeOff(transactionWriteOffRequest, null)
             );
 
             // Then
             assertThat(exception).hasMessage("Card does not belong to the user.");
 
-            verify(cardService).findCardByNumber(searchedCardNumber, user);
+            verify(cardService).findCardIdByNumber(searchedCardNumber, user);
             verify(cardService).validateCardOwnership(card1.getId());
             verifyNoMoreInteractions(cardRepository);
             verifyNoMoreInteractions(cardService);
@@ -250,7 +310,331 @@ class TransactionServiceImplTest {
     }
 
     @Test
-    void transfer() {
+    void writeOff_whenBalanceIsLessThanAmount_shouldThrowCardBalanceException() {
+        try (MockedStatic<SecurityUtil> secureUtil = mockStatic(SecurityUtil.class)) {
+            // Given
+            // sender - card1, balance 200
+            BigDecimal amount = new BigDecimal("250");
+            String searchedCardNumber = "searchedCardNumber";
+
+            TransactionWriteOffRequest transactionWriteOffRequest = new TransactionWriteOffRequest(
+                    searchedCardNumber,
+                    amount,
+                    null
+            );
+
+            secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
+            when(cardService.findCardIdByNumber(searchedCardNumber, user)).thenReturn(card1.getId());
+            when(cardService.validateCardOwnership(card1.getId())).thenReturn(true);
+            when(cardService.lockCards(List.of(card1.getId()))).thenReturn(List.of(card1));
+            when(cardService.isCardAvailable(card1)).thenReturn(true);
+
+            // When
+            CardBalanceException exception = assertThrows(
+                    CardBalanceException.class,
+                    () -> underTest.writeOff(transactionWriteOffRequest, null)
+            );
+
+            // Then
+            assertThat(exception).hasMessage("Insufficient funds on the card.");
+            assertThat(card1.getBalance()).isEqualByComparingTo("200");
+
+            verifyNoInteractions(cardRepository);
+            verifyNoInteractions(transactionRepository);
+        }
+    }
+
+    @Test
+    void writeOff_whenConditionalUpdateDoesntChangeCard_shouldThrowOptimisticLockingFailure() {
+        try (MockedStatic<SecurityUtil> secureUtil = mockStatic(SecurityUtil.class)) {
+            // Given
+            // sender - card1
+            BigDecimal amount = new BigDecimal("50");
+            String searchedCardNumber = "searchedCardNumber";
+
+            TransactionWriteOffRequest transactionWriteOffRequest = new TransactionWriteOffRequest(
+                    searchedCardNumber,
+                    amount,
+                    null
+            );
+
+            secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
+            when(cardService.findCardIdByNumber(searchedCardNumber, user)).thenReturn(card1.getId());
+            when(cardService.validateCardOwnership(card1.getId())).thenReturn(true);
+            when(cardService.lockCards(List.of(card1.getId()))).thenReturn(List.of(card1));
+            when(cardService.isCardAvailable(card1)).thenReturn(true);
+            when(cardRepository.withdraw(card1.getId(), card1.getVersion(), CardStatus.ACTIVE, amount)).thenReturn(0);
+
+            // When
+            assertThrows(
+                    ObjectOptimisticLockingFailureException.class,
+                    () -> underTest.writeOff(transactionWriteOffRequest, null)
+            );
+
+            // Then
+            assertThat(card1.getBalance()).isEqualByComparingTo("200");
+
+            verifyNoInteractions(transactionRepository);
+            verify(limitService, never()).registerWriteOff(any(), any(), any());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void transfer_whenCardsBelongToUser_shouldLockBothCardsAndMoveFunds() {
+        try (MockedStatic<SecurityUtil> secureUtil = mockStatic(SecurityUtil.class)) {
+            // Given
+            // sender - card2, receiver - card1
+            BigDecimal amount = new BigDecimal("100");
+            String senderCardNumber = "2222222222222222";
+            String receiverCardNumber = "1111111111111111";
+
+            TransactionTransferRequest transactionTransferRequest = new TransactionTransferRequest(
+                    senderCardNumber,
+                    receiverCardNumber,
+                    amount,
+                    null
+            );
+
+            TransactionResponse expectedTransactionResponse = new TransactionResponse(
+                    amount, TransactionType.WRITE_OFF, null, "**** **** **** 1111", null, null
+            );
+
+            secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
+            when(cardService.findCardIdByNumber(senderCardNumber, user)).thenReturn(card2.getId());
+            when(cardService.findCardIdByNumber(receiverCardNumber, user)).thenReturn(card1.getId());
+            when(cardService.validateCardOwnership(card2.getId())).thenReturn(true);
+            when(cardService.validateCardOwnership(card1.getId())).thenReturn(true);
+            // Locked cards are returned in id order, not in the order of the request
+            when(cardService.lockCards(List.of(card2.getId(), card1.getId()))).thenReturn(List.of(card1, card2));
+            when(cardService.isCardAvailable(card2)).thenReturn(true);
+            when(cardRepository.deposit(card1.getId(), amount)).thenReturn(1);
+            when(cardRepository.withdraw(card2.getId(), card2.getVersion(), CardStatus.ACTIVE, amount)).thenReturn(1);
+            when(transactionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            when(transactionMapper.toTransactionResponse(any(Transaction.class))).thenReturn(expectedTransactionResponse);
+
+            // When
+            TransactionResponse actualTransactionResponse = underTest.transfer(transactionTransferRequest, null);
+
+            // Then
+            assertThat(actualTransactionResponse).isEqualTo(expectedTransactionResponse);
+            assertThat(card2.getBalance()).isEqualByComparingTo("300");
+            assertThat(card1.getBalance()).isEqualByComparingTo("300");
+
+            ArgumentCaptor<Transaction> transactionCaptor = ArgumentCaptor.forClass(Transaction.class);
+            verify(transactionMapper).toTransactionResponse(transactionCaptor.capture());
+            assertThat(transactionCaptor.getValue().getCard()).isSameAs(card2);
+            assertThat(transactionCaptor.getValue().getType()).isEqualTo(TransactionType.WRITE_OFF);
+
+            verify(cardService).lockCards(List.of(card2.getId(), card1.getId()));
+            // Rows are updated in id order: the receiver (id 1) before the sender (id 2)
+            InOrder inOrder = inOrder(cardRepository);
+            inOrder.verify(cardRepository).deposit(card1.getId(), amount);
+            inOrder.verify(cardRepository).withdraw(card2.getId(), card2.getVersion(), CardStatus.ACTIVE, amount);
+            verify(limitService).registerWriteOff(eq(card2), eq(amount), any(LocalDateTime.class));
+
+            // Both transactions are written to the outbox in the transaction of the transfer
+            ArgumentCaptor<List<Transaction>> outboxCaptor = ArgumentCaptor.forClass(List.class);
+            verify(outboxService).appendPostedTransactions(outboxCaptor.capture());
+            assertThat(outboxCaptor.getValue()).extracting(Transaction::getType)
+                    .containsExactly(TransactionType.WRITE_OFF, TransactionType.REPLENISHMENT);
+        }
+    }
+
+    @Test
+    void writeOffGroup_whenSecondWriteOffExceedsBalance_shouldRejectItAndCompleteOthersAfterCommit() {
+        // Given
+        BigDecimal totalAmount = new BigDecimal("250");
+        PendingWriteOff first = pendingWriteOff("100");
+        PendingWriteOff second = pendingWriteOff("350");
+        PendingWriteOff third = pendingWriteOff("150");
+
+        TransactionResponse transactionResponse = new TransactionResponse(
+                null, TransactionType.WRITE_OFF, null, null, null, null
+        );
+
+        when(cardService.lockCards(List.of(card2.getId()))).thenReturn(List.of(card2));
+        when(cardService.isCardAvailable(card2)).thenReturn(true);
+        when(cardRepository.withdrawBatch(card2.getId(), card2.getVersion(), CardStatus.ACTIVE, totalAmount, 2)).thenReturn(1);
+        when(transactionMapper.toTransactionResponse(any(Transaction.class))).thenReturn(transactionResponse);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            underTest.writeOffGroup(card2.getId(), List.of(first, second, third));
+
+            // Then
+            assertThat(first.result()).isNotDone();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(first.result()).isCompletedWithValue(transactionResponse);
+        assertThat(third.result()).isCompletedWithValue(transactionResponse);
+        assertThat(second.result()).isCompletedExceptionally();
+        assertThat(card2.getBalance()).isEqualByComparingTo("150");
+
+        // Limits are checked together with the write-offs accepted before
+        verify(limitService).checkCardLimits(card2, new BigDecimal("100"));
+        verify(limitService).checkCardLimits(card2, new BigDecimal("450"));
+        verify(limitService).checkCardLimits(card2, totalAmount);
+        verify(limitService).registerWriteOff(eq(card2), eq(totalAmount), any(LocalDateTime.class));
+        verify(transactionRepository).saveAll(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void transferBatch_whenOneRecipientNotFound_shouldRejectItAndMoveTotalByOneUpdatePerCard() {
+        try (MockedStatic<SecurityUtil> secureUtil = mockStatic(SecurityUtil.class)) {
+            // Given
+            // sender - card2, receiver of two transfers - card1
+            String senderCardNumber = "2222222222222222";
+            String receiverCardNumber = "1111111111111111";
+            String unknownCardNumber = "3333333333333333";
+            BigDecimal totalAmount = new BigDecimal("150");
+
+            TransactionBatchTransferRequest request = new TransactionBatchTransferRequest(
+                    senderCardNumber,
+                    List.of(
+                            new TransactionBatchTransferItem(receiverCardNumber, new BigDecimal("100"), null),
+                            new TransactionBatchTransferItem(unknownCardNumber, new BigDecimal("30"), null),
+                            new TransactionBatchTransferItem(receiverCardNumber, new BigDecimal("50"), "Bonus")
+                    ),
+                    "Salary"
+            );
+
+            TransactionResponse transactionResponse = new TransactionResponse(
+                    null, TransactionType.WRITE_OFF, null, "**** **** **** 1111", null, null
+            );
+
+            secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
+            when(cardService.findCardIdByNumber(senderCardNumber, user)).thenReturn(card2.getId());
+            when(cardService.validateCardOwnership(card2.getId())).thenReturn(true);
+            when(cardService.findCardIdsByNumbers(List.of(receiverCardNumber, unknownCardNumber, receiverCardNumber), user))
+                    .thenReturn(Map.of(receiverCardNumber, card1.getId()));
+            when(cardService.lockCards(Set.of(card1.getId(), card2.getId()))).thenReturn(List.of(card1, card2));
+            when(cardService.isCardAvailable(card2)).thenReturn(true);
+            when(cardRepository.depositBatch(card1.getId(), totalAmount, 2)).thenReturn(1);
+            when(cardRepository.withdrawBatch(card2.getId(), card2.getVersion(), CardStatus.ACTIVE, totalAmount, 2)).thenReturn(1);
+            when(transactionMapper.toTransactionResponse(any(Transaction.class))).thenReturn(transactionResponse);
+
+            // When
+            TransactionBatchTransferResponse actualResponse = underTest.transferBatch(request, null);
+
+            // Then
+            assertThat(actualResponse.totalAmount()).isEqualByComparingTo(totalAmount);
+            assertThat(actualResponse.completed()).isEqualTo(2);
+            assertThat(actualResponse.rejected()).isEqualTo(1);
+            assertThat(actualResponse.results()).extracting(TransactionBatchItemResult::status)
+                    .containsExactly(BatchItemStatus.COMPLETED, BatchItemStatus.REJECTED, BatchItemStatus.COMPLETED);
+            assertThat(card2.getBalance()).isEqualByComparingTo("250");
+            assertThat(card1.getBalance()).isEqualByComparingTo("350");
+
+            ArgumentCaptor<List<Transaction>> transactionsCaptor = ArgumentCaptor.forClass(List.class);
+            verify(transactionRepository).saveAll(transactionsCaptor.capture());
+            assertThat(transactionsCaptor.getValue()).hasSize(4);
+            assertThat(transactionsCaptor.getValue()).extracting(Transaction::getDescription)
+                    .containsExactly("Salary", "Salary", "Bonus", "Bonus");
+
+            // Limits are checked and registered once for the total, rows are updated in id order
+            verify(limitService).checkCardLimits(card2, totalAmount);
+            verify(limitService).registerWriteOff(eq(card2), eq(totalAmount), any(LocalDateTime.class));
+            InOrder inOrder = inOrder(cardRepository);
+            inOrder.verify(cardRepository).depositBatch(card1.getId(), totalAmount, 2);
+            inOrder.verify(cardRepository).withdrawBatch(card2.getId(), card2.getVersion(), CardStatus.ACTIVE, totalAmount, 2);
+        }
+    }
+
+    @Test
+    void transferBatch_whenTotalExceedsBalance_shouldThrowCardBalanceExceptionWithoutChanges() {
+        try (MockedStatic<SecurityUtil> secureUtil = mockStatic(SecurityUtil.class)) {
+            // Given
+            String senderCardNumber = "1111111111111111";
+            String receiverCardNumber = "2222222222222222";
+
+            TransactionBatchTransferRequest request = new TransactionBatchTransferRequest(
+                    senderCardNumber,
+                    List.of(
+                            new TransactionBatchTransferItem(receiverCardNumber, new BigDecimal("150"), null),
+                            new TransactionBatchTransferItem(receiverCardNumber, new BigDecimal("150"), null)
+                    ),
+                    null
+            );
+
+            secureUtil.when(SecurityUtil::getCurrentUser).thenReturn(user);
+            when(cardService.findCardIdByNumber(senderCardNumber, user)).thenReturn(card1.getId());
+            when(cardService.validateCardOwnership(card1.getId())).thenReturn(true);
+            when(cardService.findCardIdsByNumbers(List.of(receiverCardNumber, receiverCardNumber), user))
+                    .thenReturn(Map.of(receiverCardNumber, card2.getId()));
+            when(cardService.lockCards(Set.of(card1.getId(), card2.getId()))).thenReturn(List.of(card1, card2));
+            when(cardService.isCardAvailable(card1)).thenReturn(true);
+
+            // When
+            assertThrows(CardBalanceException.class, () -> underTest.transferBatch(request, null));
+
+            // Then
+            verify(cardRepository, never()).withdrawBatch(any(), any(), any(), any(), anyLong());
+            verify(cardRepository, never()).depositBatch(any(), any(), anyLong());
+            verifyNoInteractions(transactionRepository);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scrollTransactionsByCard_whenMoreTransactionsThanPageSize_shouldReturnPageWithNextCursor() {
+        // Given
+        TransactionParamFilter filter = new TransactionParamFilter(null, null, null, null, false);
+        Transaction transaction1 = new Transaction();
+        transaction1.setId(30L);
+        transaction1.setTransactionDate(LocalDateTime.of(2025, 1, 3, 10, 0));
+        Transaction transaction2 = new Transaction();
+        transaction2.setId(20L);
+        transaction2.setTransactionDate(LocalDateTime.of(2025, 1, 2, 10, 0));
+        Transaction transaction3 = new Transaction();
+        transaction3.setId(10L);
+        transaction3.setTransactionDate(LocalDateTime.of(2025, 1, 1, 10, 0));
+
+        TransactionResponse transactionResponse = new TransactionResponse(null, null, null, null, null, null);
+
+        when(cardService.existById(card1.getId())).thenReturn(true);
+        // page size 2 + one extra transaction to detect the next page
+        when(transactionRepository.findBy(any(Specification.class), any(Function.class)))
+                .thenReturn(List.of(transaction1, transaction2, transaction3));
+        when(transactionMapper.toTransactionResponse(any(Transaction.class))).thenReturn(transactionResponse);
+
+        // When
+        CursorPage<TransactionResponse> actualPage = underTest.scrollTransactionsByCard(card1.getId(), filter, null, 2, "DESC");
+
+        // Then
+        assertThat(actualPage.content()).hasSize(2);
+        assertThat(actualPage.hasNext()).isTrue();
+        assertThat(TransactionCursor.decode(actualPage.nextCursor()))
+                .isEqualTo(new TransactionCursor(transaction2.getTransactionDate(), transaction2.getId()));
+
+        verify(transactionMapper, times(2)).toTransactionResponse(any(Transaction.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scrollTransactionsByCard_whenLastPage_shouldReturnPageWithoutNextCursor() {
+        // Given
+        TransactionParamFilter filter = new TransactionParamFilter(null, null, null, null, false);
+        Transaction transaction = new Transaction();
+        transaction.setId(10L);
+        transaction.setTransactionDate(LocalDateTime.of(2025, 1, 1, 10, 0));
+        String cursor = new TransactionCursor(LocalDateTime.of(2025, 1, 2, 10, 0), 20L).encode();
+
+        when(cardService.existById(card1.getId())).thenReturn(true);
+        when(transactionRepository.findBy(any(Specification.class), any(Function.class))).thenReturn(List.of(transaction));
+
+        // When
+        CursorPage<TransactionResponse> actualPage = underTest.scrollTransactionsByCard(card1.getId(), filter, cursor, 2, "DESC");
+
+        // Then
+        assertThat(actualPage.content()).hasSize(1);
+        assertThat(actualPage.hasNext()).isFalse();
+        assertThat(actualPage.nextCursor()).isNull();
     }
 
     @Test
@@ -258,6 +642,97 @@ class TransactionServiceImplTest {
     }
 
     @Test
-    void getTransactionsByCard() {
+    @SuppressWarnings("unchecked")
+    void getTransactionsByCard_whenCountModeApproximate_shouldTakeTotalFromCardCounterWithoutCountQuery() {
+        // Given
+        TransactionParamFilter filter = new TransactionParamFilter(null, TransactionType.WRITE_OFF, null, null, false);
+        Pageable expectedPageable = PageRequest.of(0, 2, Sort.by(Sort.Order.asc("id")));
+        Transaction transaction = new Transaction();
+        TransactionResponse transactionResponse = new TransactionResponse(null, null, null, null, null, null);
+
+        when(cardService.existById(card1.getId())).thenReturn(true);
+        when(sliceRepository.findAll(eq(Transaction.class), any(Specification.class), eq(expectedPageable), eq("card.user")))
+                .thenReturn(new SliceImpl<>(List.of(transaction, transaction), expectedPageable, true));
+        when(transactionMapper.toTransactionResponse(transaction)).thenReturn(transactionResponse);
+        when(cardRepository.findTransactionCountById(card1.getId())).thenReturn(Optional.of(42L));
+
+        // When
+        Slice<TransactionResponse> actualPage = underTest.getTransactionsByCard(
+                card1.getId(), filter, 0, 2, List.of("id"), "ASC", CountMode.APPROXIMATE);
+
+        // Then
+        assertThat(actualPage).isInstanceOf(Page.class);
+        assertThat(((Page<TransactionResponse>) actualPage).getTotalElements()).isEqualTo(42);
+        assertThat(actualPage.getContent()).hasSize(2);
+        verify(transactionRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void getTransactionHistoryByUserCard_whenCountModeExact_shouldReturnCardOnceAndTotalFromCountQuery() {
+        // Given
+        TransactionParamFilter filter = new TransactionParamFilter(null, TransactionType.WRITE_OFF, null, null, true);
+        Pageable expectedPageable = PageRequest.of(0, 10, Sort.by(Sort.Order.desc("amount")));
+        TransactionHistoryItem item = new TransactionHistoryItem(1L, BigDecimal.TEN, TransactionType.WRITE_OFF, null, null, null);
+        Page<TransactionHistoryItem> items = new PageImpl<>(List.of(item), expectedPageable, 1);
+        TransactionHistoryResponse expectedResponse = new TransactionHistoryResponse(null, List.of(item), 0, 10, false, 1L);
+
+        when(cardService.validateCardOwnership(card1.getId())).thenReturn(true);
+        when(cardRepository.findById(card1.getId())).thenReturn(Optional.of(card1));
+        when(transactionRepository.findHistoryByCard(card1.getId(), TransactionType.WRITE_OFF, null, null, expectedPageable))
+                .thenReturn(items);
+        when(transactionMapper.toTransactionHistoryResponse(card1, items, 1L)).thenReturn(expectedResponse);
+
+        // When
+        TransactionHistoryResponse actualResponse = underTest.getTransactionHistoryByUserCard(
+                card1.getId(), filter, 0, 10, List.of("amount"), "DESC", CountMode.EXACT);
+
+        // Then
+        assertThat(actualResponse).isEqualTo(expectedResponse);
+        verify(transactionRepository, never()).findHistorySliceByCard(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getTransactionHistoryByCard_whenCountModeApproximate_shouldReadSliceAndTakeTotalFromCardCounter() {
+        // Given
+        card1.setTransactionCount(57L);
+        TransactionParamFilter filter = new TransactionParamFilter(null, null, null, null, false);
+        Pageable expectedPageable = PageRequest.of(1, 10, Sort.by(Sort.Order.asc("id")));
+        Slice<TransactionHistoryItem> items = new SliceImpl<>(List.of(), expectedPageable, false);
+        TransactionHistoryResponse expectedResponse = new TransactionHistoryResponse(null, List.of(), 1, 10, false, 57L);
+
+        when(cardRepository.findById(card1.getId())).thenReturn(Optional.of(card1));
+        when(transactionRepository.findHistorySliceByCard(card1.getId(), null, null, null, expectedPageable)).thenReturn(items);
+        when(transactionMapper.toTransactionHistoryResponse(card1, items, 57L)).thenReturn(expectedResponse);
+
+        // When
+        TransactionHistoryResponse actualResponse = underTest.getTransactionHistoryByCard(
+                card1.getId(), filter, 1, 10, List.of("id"), "ASC", CountMode.APPROXIMATE);
+
+        // Then
+        assertThat(actualResponse).isEqualTo(expectedResponse);
+        verify(transactionRepository, never()).findHistoryByCard(any(), any(), any(), any(), any());
+        verifyNoInteractions(cardService);
+    }
+
+    @Test
+    void getTransactionHistoryByCard_whenCardNotFound_shouldThrowCardNotFoundException() {
+        // Given
+        TransactionParamFilter filter = new TransactionParamFilter(null, null, null, null, false);
+        when(cardRepository.findById(99L)).thenReturn(Optional.empty());
+
+        // When
+        assertThrows(CardNotFoundException.class, () -> underTest.getTransactionHistoryByCard(
+                99L, filter, 0, 10, List.of("id"), "ASC", CountMode.SLICE));
+
+        // Then
+        verifyNoInteractions(transactionRepository);
+    }
+
+    private PendingWriteOff pendingWriteOff(String amount) {
+        return new PendingWriteOff(
+                new TransactionWriteOffRequest("2222222222222222", new BigDecimal(amount), null),
+                new CompletableFuture<>(),
+                System.nanoTime()
+        );
     }
-}
\ No newline at end of file
+}